@@ -0,0 +1,132 @@
+package qcs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * The .qc path on large grids: parsing the bytes the controller reads back, loading a whole
+ * file, generating the code box text, and the model's own row,col,gate save and load.
+ * The same grids saved and loaded as .qcb for comparison.
+ * Run with -prof gc to see the allocation per operation.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+public class QCSCircuitFileBenchmark {
+
+	// rows x columns
+	@Param({"16x64", "128x512", "1024x1024"})
+	String grid;
+
+	private QCSModel model;
+	private QCSModel target;
+	private byte[] bytes;
+	private Path qcFile;
+	private Path modelFile;
+	private Path binaryFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		String[] size = grid.split("x");
+		int rows = Integer.parseInt(size[0]);
+		int columns = Integer.parseInt(size[1]);
+
+		// every cell filled with a random single qubit gate, fixed seed so each run sees the same grid
+		String[] gates = {"I", "X", "Y", "Z", "H", "S", "T", "U"};
+		Random random = new Random(42);
+		model = new QCSModel();
+		model.setGridSize(rows, columns);
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				model.setGate(r, c, gates[random.nextInt(gates.length)]);
+			}
+		}
+		target = new QCSModel();
+		target.setGridSize(rows, columns);
+
+		String file = "# Circuit grid gates\n" + QCSCircuitFile.toQiskit(model) + "\n" + QCSCircuitFile.CODE_BOX_MARKER + "\n";
+		bytes = file.getBytes(StandardCharsets.UTF_8);
+		qcFile = Files.createTempFile("qcs-bench", ".qc");
+		Files.write(qcFile, bytes);
+		modelFile = Files.createTempFile("qcs-bench", ".txt");
+		model.saveToFile(modelFile.toFile());
+		binaryFile = Files.createTempFile("qcs-bench", QCSCircuitBinary.EXTENSION);
+		QCSCircuitBinary.write(binaryFile, model);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(qcFile);
+		Files.deleteIfExists(modelFile);
+		Files.deleteIfExists(binaryFile);
+	}
+
+	@Benchmark
+	public QCSCircuitFile.Cells parseBytes() throws IOException {
+		QCSCircuitFile.Cells cells = new QCSCircuitFile.Cells();
+		QCSCircuitFile.read(Channels.newChannel(new ByteArrayInputStream(bytes)), cells, true);
+		return cells;
+	}
+
+	@Benchmark
+	public QCSModel readFile() throws IOException {
+		QCSCircuitFile.read(qcFile, target);
+		return target;
+	}
+
+	@Benchmark
+	public String generateCode() {
+		return QCSCircuitFile.toQiskit(model);
+	}
+
+	@Benchmark
+	public void saveModel() throws IOException {
+		model.saveToFile(modelFile.toFile());
+	}
+
+	@Benchmark
+	public QCSModel loadModel() throws IOException {
+		target.setGridSize(model.getRows(), model.getColumns());
+		target.loadFromFile(modelFile.toFile());
+		return target;
+	}
+
+	@Benchmark
+	public void saveBinary() throws IOException {
+		QCSCircuitBinary.write(binaryFile, model);
+	}
+
+	@Benchmark
+	public QCSModel loadBinary() throws IOException {
+		QCSCircuitBinary.read(binaryFile, target);
+		return target;
+	}
+}
@@ -0,0 +1,86 @@
+package qcs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Throughput of one gate applied to a whole state vector, from 10 to 22 qubits and from 1 to 8
+ * threads. 28 qubits takes 4 GB per state, so it is left out and run alone with -p qubits=28
+ * on a big enough machine.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector",
+		"--enable-native-access=ALL-UNNAMED", "-Xmx6g"})
+public class QCSKernelBenchmark {
+
+	@Param({"10", "16", "22"})
+	int qubits;
+
+	@Param({"HEAP", "OFF_HEAP"})
+	QCSBackend.Type backend;
+
+	@Param({"H", "T", "X", "CX"})
+	QCSGate gate;
+
+	@Param({"VECTOR", "SCALAR"})
+	QCSStateVector.Kernel kernel;
+
+	@Param({"1", "2", "4", "8"})
+	int threads;
+
+	private QCSBackend state;
+	private QCSOperation op;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		state = (backend == QCSBackend.Type.OFF_HEAP) ? new QCSOffHeapStateVector(qubits, false) : new QCSStateVector(qubits);
+		pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+		state.setPool(pool);
+		state.setKernel(kernel);
+
+		// gates in the middle of the register, the controlled ones with the control just below
+		int target = qubits / 2;
+		int[] controls = (gate.getQubits() > 1) ? new int[] {target - 1} : new int[0];
+		op = new QCSOperation(gate, target, controls, gate.matrix(0, 0, 0));
+
+		// a spread out state, so no kernel sees all zeros
+		for (int q = 0; q < qubits; q++) {
+			state.apply(new QCSOperation(QCSGate.H, q, new int[0], QCSGate.H.matrix(0, 0, 0)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		state.close();
+		if (pool != null) pool.shutdown();
+	}
+
+	@Benchmark
+	public void apply() {
+		state.apply(op);
+	}
+}
@@ -15,7 +15,9 @@ public class QCS {
 	
     public static void main(String[] args) {
     	
-    	QCSSplash.showSplash();         // Show splash before launching JavaFX
+    	javax.swing.JWindow splash = QCSSplash.showSplash();         // Show splash before launching JavaFX
+    	// Warm up while JavaFX starts, the splash closes as soon as it is done
+    	QCSWarmup.start().whenComplete((result, e) -> QCSSplash.hideSplash(splash));
 		Application.launch(QCSView.class, args);  // Launch the JavaFX app
     }
     
@@ -24,7 +26,7 @@ public class QCS {
 	 */
 	private static class QCSSplash {
 
-		public static void showSplash() {
+		public static javax.swing.JWindow showSplash() {
 			javax.swing.JWindow splash = new javax.swing.JWindow();
 			javax.swing.JLabel splashLabel = new javax.swing.JLabel();
 
@@ -52,15 +54,18 @@ public class QCS {
 			splash.setSize(500, 259); // Adjust based on image size
 			splash.setLocationRelativeTo(null); // Center on screen
 			splash.setVisible(true);
+			return splash;
+		}
 
-			try {
-				Thread.sleep(3000); // Display for 3 seconds
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
-
-			splash.setVisible(false);
-			splash.dispose();
+		/**
+		 * closing the splash screen, from any thread
+		 * @param splash
+		 */
+		public static void hideSplash(javax.swing.JWindow splash) {
+			javax.swing.SwingUtilities.invokeLater(() -> {
+				splash.setVisible(false);
+				splash.dispose();
+			});
 		}
 	}
 	
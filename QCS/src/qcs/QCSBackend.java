@@ -0,0 +1,147 @@
+package qcs;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Interface for the ways the engine can hold the state of the circuit
+ */
+
+public interface QCSBackend extends AutoCloseable {
+
+	/**
+	 * Enum for choosing a backend, AUTO lets the engine decide from the circuit
+	 */
+	enum Type {
+		AUTO, HEAP, OFF_HEAP, MAPPED, STABILIZER, SPARSE, MPS
+	}
+
+	/**
+	 * Interface for receiving the probabilities of a state one basis state at a time
+	 */
+	@FunctionalInterface
+	interface ProbabilityVisitor {
+		void visit(long index, double probability);
+	}
+
+	/**
+	 * Interface for measuring every qubit of a state at once, for backends that can draw a shot
+	 * without listing their outcomes. Called from several threads at a time.
+	 */
+	@FunctionalInterface
+	interface Sampler {
+		/**
+		 * one shot, qubit q going to bit q % 64 of bits[q / 64]. Every word of bits is overwritten.
+		 * @param random
+		 * @param bits
+		 */
+		void draw(SplittableRandom random, long[] bits);
+	}
+
+	/**
+	 * number of qubits
+	 * @return
+	 */
+	int getQubits();
+
+	/**
+	 * applying one resolved gate in place
+	 * @param op
+	 */
+	void apply(QCSOperation op);
+
+	/**
+	 * back to the |0...0> state
+	 */
+	void reset();
+
+	/**
+	 * probability of measuring a basis state
+	 * @param index
+	 * @return
+	 */
+	double probability(long index);
+
+	/**
+	 * calling the visitor for every basis state with a non-zero probability
+	 * @param visitor
+	 */
+	default void forEachProbability(ProbabilityVisitor visitor) {
+		if (getQubits() > 62) {
+			throw new QCSController.QCSException("Can't list the outcomes of " + getQubits() + " qubits");
+		}
+		long dimension = 1L << getQubits();
+		for (long i = 0; i < dimension; i++) {
+			double p = probability(i);
+			if (p > 0) visitor.visit(i, p);
+		}
+	}
+
+	/**
+	 * sampler drawing shots straight from the state, made once per state and kept while it doesn't change
+	 * @return null when the shots are drawn from the listed probabilities
+	 */
+	default Sampler sampler() {
+		return null;
+	}
+
+	/**
+	 * overwriting one amplitude, used to move a state between backends
+	 * @param index
+	 * @param re
+	 * @param im
+	 */
+	default void setAmplitude(long index, double re, double im) {
+		throw new QCSController.QCSException(getClass().getSimpleName() + " can't be loaded amplitude by amplitude");
+	}
+
+	/**
+	 * independent copy of the state, used for checkpoints
+	 * @return null when the backend can't be copied in memory
+	 */
+	default QCSBackend copy() {
+		return null;
+	}
+
+	/**
+	 * memory held by the state, used to budget checkpoints
+	 * @return
+	 */
+	default long sizeBytes() {
+		return 0;
+	}
+
+	/**
+	 * pool used to split gate updates across cores, null to run on the calling thread
+	 * @param pool
+	 */
+	default void setPool(ForkJoinPool pool) {
+	}
+
+	/**
+	 * choosing the scalar or SIMD inner loops where the backend has both
+	 * @param kernel
+	 */
+	default void setKernel(QCSStateVector.Kernel kernel) {
+	}
+
+	/**
+	 * summary of the work done since the last call, shown after each step
+	 * @return null when there is nothing to report
+	 */
+	default String stepReport() {
+		return null;
+	}
+
+	/**
+	 * freeing the memory held by the state, the backend can't be used afterwards
+	 */
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,247 @@
+package qcs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Command line entry point for simulating saved .qc and .qcb files without a display. Nothing from
+ * JavaFX or the splash screen is loaded. Each circuit is run to its last column and its most
+ * likely outcomes, or its most frequent measured outcomes when shots are asked for, are written
+ * as JSON or CSV as soon as it finishes.
+ */
+
+public class QCSBatch {
+
+	private static final String USAGE = String.join("\n",
+			"Usage: java -cp <classpath> qcs.QCSBatch [options] circuit.qc|circuit.qcb...",
+			"  --backend TYPE   AUTO, HEAP, OFF_HEAP, MAPPED, STABILIZER, SPARSE or MPS (default AUTO)",
+			"  --threads N      worker threads per gate (default: all cores)",
+			"  --shots N        measure N times, 0 lists the probabilities instead (default 0)",
+			"  --seed N         seed for the shots, the same for every file",
+			"  --top K          outcomes written per circuit, the rest summed as other (default 16)",
+			"  --format F       json or csv (default json)",
+			"  --output FILE    write to a file instead of standard output");
+
+	private QCSBackend.Type backend = QCSBackend.Type.AUTO;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long shots = 0;
+	private Long seed = null;
+	private int top = 16;
+	private boolean csv = false;
+	private Path output = null;
+	private final List<Path> files = new ArrayList<>();
+	private int written = 0;
+
+	public static void main(String[] args) {
+		QCSBatch batch = new QCSBatch();
+		try {
+			batch.parseArguments(args);
+		} catch (QCSController.QCSException | NumberFormatException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		try {
+			System.exit(batch.run() ? 0 : 1);
+		} catch (IOException e) {
+			System.err.println("Error writing results: " + e.getMessage());
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * reading the options and the list of files
+	 * @param args
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				files.add(Path.of(arg));
+				continue;
+			}
+			if (i + 1 >= args.length) {
+				throw new QCSController.QCSException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			switch (arg) {
+				case "--backend" -> {
+					try {
+						backend = QCSBackend.Type.valueOf(value.toUpperCase(Locale.ROOT));
+					} catch (IllegalArgumentException e) {
+						throw new QCSController.QCSException("Unknown backend: " + value);
+					}
+				}
+				case "--threads" -> threads = Integer.parseInt(value);
+				case "--shots" -> shots = Long.parseLong(value);
+				case "--seed" -> seed = Long.parseLong(value);
+				case "--top" -> top = Integer.parseInt(value);
+				case "--format" -> {
+					if (!value.equalsIgnoreCase("json") && !value.equalsIgnoreCase("csv")) {
+						throw new QCSController.QCSException("Unknown format: " + value);
+					}
+					csv = value.equalsIgnoreCase("csv");
+				}
+				case "--output" -> output = Path.of(value);
+				default -> throw new QCSController.QCSException("Unknown option: " + arg);
+			}
+		}
+		if (files.isEmpty()) throw new QCSController.QCSException("No circuit files given.");
+		if (threads < 1) throw new QCSController.QCSException("Thread count must be a positive integer.");
+		if (shots < 0) throw new QCSController.QCSException("Shot count can't be negative.");
+		if (top < 1) throw new QCSController.QCSException("Number of outcomes must be a positive integer.");
+	}
+
+	/**
+	 * simulating every file in turn on one engine
+	 * @return false if any circuit failed
+	 * @throws IOException
+	 */
+	private boolean run() throws IOException {
+		QCSModel model = new QCSModel();
+		QCSEngine engine = new QCSEngine(model);
+		engine.setThreads(threads);
+		engine.setBackendType(backend);
+		boolean ok = true;
+
+		try (Writer out = (output == null)
+				? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+				: Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			out.write(csv ? "file,qubits,columns,backend,millis,outcome,value,error\n" : "[\n");
+
+			for (Path file : files) {
+				engine.release();
+				if (seed != null) engine.setSeed(seed);
+				try {
+					// .qc files don't carry phase parameters, so they start from zero like a new circuit
+					Arrays.fill(model.getPhaseParams(), 0.0);
+					if (QCSCircuitBinary.isBinary(file)) {
+						QCSCircuitBinary.read(file, model);
+					} else {
+						QCSCircuitFile.read(file, model);
+					}
+					long start = System.nanoTime();
+					engine.runTo(model.getColumns());
+					QCSTopK outcomes = (shots > 0)
+							? QCSTopK.ofCounts(engine.sample(shots), top, engine.getPool(), engine::isCancelled)
+							: engine.topOutcomes(top);
+					double millis = (System.nanoTime() - start) / 1e6;
+					writeResult(out, file, model, engine.getStateType(), millis, outcomes);
+				} catch (IOException e) {
+					writeError(out, file, "Error loading file: " + e.getMessage());
+					ok = false;
+				} catch (QCSController.QCSException | NumberFormatException e) {
+					writeError(out, file, e.getMessage());
+					ok = false;
+				}
+				out.flush();
+			}
+
+			if (!csv) out.write("\n]\n");
+		} finally {
+			engine.close();
+		}
+		return ok;
+	}
+
+	private void writeResult(Writer out, Path file, QCSModel model, QCSBackend.Type type, double millis, QCSTopK outcomes)
+			throws IOException {
+		int qubits = model.getRows();
+		String[] keys = outcomes.names(qubits);
+		double[] weights = outcomes.weights();
+		String time = String.format(Locale.ROOT, "%.3f", millis);
+
+		if (csv) {
+			String prefix = csvField(file.toString()) + "," + qubits + "," + model.getColumns() + "," + type + "," + time + ",";
+			for (int i = 0; i < keys.length; i++) {
+				out.write(prefix + keys[i] + "," + number(weights[i]) + ",\n");
+			}
+			if (outcomes.getOther() > 0) out.write(prefix + "other," + number(outcomes.getOther()) + ",\n");
+			return;
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("  {\"file\": ").append(jsonString(file.toString()))
+				.append(", \"qubits\": ").append(qubits)
+				.append(", \"columns\": ").append(model.getColumns())
+				.append(", \"backend\": \"").append(type).append('"')
+				.append(", \"millis\": ").append(time);
+		if (shots > 0) json.append(", \"shots\": ").append(shots);
+		json.append(", \"outcomes\": {");
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0) json.append(", ");
+			json.append('"').append(keys[i]).append("\": ").append(number(weights[i]));
+		}
+		json.append("}, \"other\": ").append(number(outcomes.getOther())).append('}');
+		startRecord(out);
+		out.write(json.toString());
+	}
+
+	private void writeError(Writer out, Path file, String message) throws IOException {
+		if (csv) {
+			out.write(csvField(file.toString()) + ",,,,,,," + csvField(message) + "\n");
+			return;
+		}
+		startRecord(out);
+		out.write("  {\"file\": " + jsonString(file.toString()) + ", \"error\": " + jsonString(message) + "}");
+	}
+
+	/**
+	 * comma between JSON records
+	 * @param out
+	 * @throws IOException
+	 */
+	private void startRecord(Writer out) throws IOException {
+		if (written++ > 0) out.write(",\n");
+	}
+
+	/**
+	 * counts without a decimal point, probabilities in full
+	 * @param value
+	 * @return
+	 */
+	private String number(double value) {
+		return (shots > 0) ? Long.toString((long) value) : Double.toString(value);
+	}
+
+	private static String jsonString(String text) {
+		StringBuilder s = new StringBuilder("\"");
+		for (char c : text.toCharArray()) {
+			switch (c) {
+				case '"' -> s.append("\\\"");
+				case '\\' -> s.append("\\\\");
+				case '\n' -> s.append("\\n");
+				case '\r' -> s.append("\\r");
+				case '\t' -> s.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						s.append(String.format("\\u%04x", (int) c));
+					} else {
+						s.append(c);
+					}
+				}
+			}
+		}
+		return s.append('"').toString();
+	}
+
+	private static String csvField(String text) {
+		if (text == null) return "";
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) return text;
+		return "\"" + text.replace("\"", "\"\"") + "\"";
+	}
+}
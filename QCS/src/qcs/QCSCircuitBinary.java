@@ -0,0 +1,224 @@
+package qcs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Reader and writer for .qcb files, a compact binary form of the grid. Little endian:
+ *   "QCSB", u16 version, u16 flags, i32 rows, i32 columns,
+ *   i32 parameter count and that many doubles (the U and CU phase parameters a, b, c),
+ *   rows * columns QCSGate opcodes of one byte, row by row, the same as the model holds them,
+ *   and a CRC-32C of every byte before it.
+ * Files are memory mapped for reading, so a grid of a million cells is one pass over the page cache.
+ * The code box isn't stored, it is generated again from the grid.
+ */
+
+public final class QCSCircuitBinary {
+
+	public static final String EXTENSION = ".qcb";
+	public static final short VERSION = 1;
+
+	private static final int MAGIC = 0x42534351; // "QCSB" read little endian
+	private static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4;
+	private static final int CHECKSUM_SIZE = 4;
+	private static final int WRITE_CHUNK = 1 << 16;
+
+	private QCSCircuitBinary() {
+	}
+
+	/**
+	 * whether a file should be read as binary, going by its name
+	 * @param file
+	 * @return
+	 */
+	public static boolean isBinary(Path file) {
+		return file.getFileName().toString().toLowerCase().endsWith(EXTENSION);
+	}
+
+	/**
+	 * writing the grid and phase parameters of the model
+	 * @param file
+	 * @param model
+	 * @throws IOException
+	 */
+	public static void write(Path file, QCSModel model) throws IOException {
+		int rows = model.getRows();
+		int columns = model.getColumns();
+		byte[] cells = model.getCells();
+		double[] params = model.getPhaseParams();
+		CRC32C crc = new CRC32C();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+					.putInt(rows).putInt(columns).putInt(params.length);
+			for (double p : params) buffer.putDouble(p);
+			flush(channel, buffer, crc);
+
+			// the cells go out straight from the model's array
+			crc.update(cells, 0, cells.length);
+			ByteBuffer body = ByteBuffer.wrap(cells);
+			while (body.hasRemaining()) channel.write(body);
+
+			buffer.putInt((int) crc.getValue()).flip();
+			while (buffer.hasRemaining()) channel.write(buffer);
+		}
+	}
+
+	/**
+	 * writing out what is buffered and adding it to the checksum
+	 * @param channel
+	 * @param buffer
+	 * @param crc
+	 * @throws IOException
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * reading a file into the model, sized to the grid it was saved from
+	 * @param file
+	 * @param model
+	 * @throws IOException
+	 */
+	public static void read(Path file, QCSModel model) throws IOException {
+		Grid grid = read(file);
+		model.setGridSize(grid.rows, grid.columns);
+		grid.applyTo(model);
+	}
+
+	/**
+	 * mapping a file and checking it before anything is taken from it
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Grid read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE + CHECKSUM_SIZE) {
+				throw new QCSController.QCSException("Invalid file format.");
+			}
+			if (size > Integer.MAX_VALUE) {
+				throw new QCSController.QCSException("Circuit file is too large.");
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (map.getInt(0) != MAGIC) {
+				throw new QCSController.QCSException("Invalid file format.");
+			}
+			int version = map.getShort(4) & 0xffff;
+			if (version != VERSION) {
+				throw new QCSController.QCSException("Unsupported circuit file version: " + version);
+			}
+			int rows = map.getInt(8);
+			int columns = map.getInt(12);
+			int count = map.getInt(16);
+			long cells = (long) rows * columns;
+			long expected = HEADER_SIZE + 8L * count + cells + CHECKSUM_SIZE;
+			if (rows < 1 || columns < 1 || count < 0 || expected != size) {
+				throw new QCSController.QCSException("Corrupt circuit file: sizes don't match the header.");
+			}
+
+			int body = (int) size - CHECKSUM_SIZE;
+			CRC32C crc = new CRC32C();
+			crc.update(map.slice(0, body));
+			if ((int) crc.getValue() != map.getInt(body)) {
+				throw new QCSController.QCSException("Corrupt circuit file: checksum doesn't match.");
+			}
+
+			double[] params = new double[count];
+			for (int i = 0; i < count; i++) {
+				params[i] = map.getDouble(HEADER_SIZE + 8 * i);
+			}
+			byte[] opcodes = new byte[(int) cells];
+			map.get(HEADER_SIZE + 8 * count, opcodes);
+			for (byte op : opcodes) {
+				if ((op & 0xff) > QCSGate.maxOpcode()) {
+					throw new QCSController.QCSException("Unsupported gate opcode in file: " + (op & 0xff));
+				}
+			}
+			return new Grid(rows, columns, params, opcodes);
+		}
+	}
+
+	/**
+	 * Inner class holding a file once it is checked
+	 */
+	public static final class Grid {
+
+		private final int rows;
+		private final int columns;
+		private final double[] params;
+		private final byte[] opcodes;
+
+		private Grid(int rows, int columns, double[] params, byte[] opcodes) {
+			this.rows = rows;
+			this.columns = columns;
+			this.params = params;
+			this.opcodes = opcodes;
+		}
+
+		public int getRows() {
+			return rows;
+		}
+
+		public int getColumns() {
+			return columns;
+		}
+
+		/**
+		 * gate saved in a cell
+		 * @param row
+		 * @param col
+		 * @return null for an empty cell
+		 */
+		public QCSGate gate(int row, int col) {
+			return QCSGate.fromOpcode(opcodes[row * columns + col]);
+		}
+
+		/**
+		 * copying the phase parameters and the gates that fit into the model's grid
+		 * @param model
+		 * @return number of gates that were outside the grid
+		 */
+		public int applyTo(QCSModel model) {
+			int[] outside = {0};
+			model.batch(() -> {
+				for (int i = 0; i < Math.min(params.length, model.getPhaseParams().length); i++) {
+					model.setPhaseParam(i, params[i]);
+				}
+				// rows are copied whole into the model, cutting what doesn't fit
+				int width = Math.min(columns, model.getColumns());
+				for (int r = 0; r < rows; r++) {
+					int from = r * columns;
+					if (r < model.getRows()) {
+						model.setRow(r, opcodes, from, width);
+						from += width;
+					}
+					for (int i = from; i < (r + 1) * columns; i++) {
+						if (opcodes[i] != QCSGate.EMPTY) outside[0]++;
+					}
+				}
+			});
+			return outside[0];
+		}
+	}
+}
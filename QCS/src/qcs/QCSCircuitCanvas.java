@@ -0,0 +1,289 @@
+package qcs;
+
+import java.util.Map;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Circuit grid drawn on one canvas the size of the viewport. Only the cells in view are painted,
+ * straight from the model, so a grid of any size costs the same nodes and memory. Edits of the
+ * model repaint only the cells they list. Cells stretch
+ * to fill the space like the old button grid until they reach their minimum size, then the grid
+ * scrolls. Clicks are mapped back to the (row, col) under the mouse.
+ */
+
+public class QCSCircuitCanvas extends Region {
+
+	private static final double MIN_CELL_WIDTH = 48;
+	private static final double MIN_CELL_HEIGHT = 28;
+	private static final double MAX_PREF_WIDTH = 600;
+	private static final double MAX_PREF_HEIGHT = 400;
+	private static final double BORDER = 2;
+	private static final Color HIGHLIGHT = Color.RED;
+
+	private final QCSModel model;
+	private final Map<String, String> gateColours;
+	private final Canvas canvas = new Canvas();
+	private final ScrollBar hbar = new ScrollBar();
+	private final ScrollBar vbar = new ScrollBar();
+	private final Rectangle clip = new Rectangle();
+
+	private double cellWidth = MIN_CELL_WIDTH;
+	private double cellHeight = MIN_CELL_HEIGHT;
+	private int highlightColumn = -1;
+	private Font font = Font.font(12);
+	// fill of each opcode, set on every full redraw so picked colours show
+	private final Color[] fills = new Color[QCSGate.maxOpcode() + 1];
+	private CellListener listener;
+
+	/**
+	 * Interface for clicks on a cell of the grid
+	 */
+	public interface CellListener {
+		void cellClicked(int row, int col);
+	}
+
+	/**
+	 * constructor
+	 * @param model
+	 * @param gateColours colour of each gate name, cells of other gates use the gate's default
+	 */
+	public QCSCircuitCanvas(QCSModel model, Map<String, String> gateColours) {
+		this.model = model;
+		this.gateColours = gateColours;
+		setStyle("-fx-border-color: black; -fx-border-width: 2;");
+		setMinSize(MIN_CELL_WIDTH * 2, MIN_CELL_HEIGHT * 2);
+		setClip(clip);
+
+		vbar.setOrientation(Orientation.VERTICAL);
+		hbar.valueProperty().addListener((obs, oldValue, newValue) -> redraw());
+		vbar.valueProperty().addListener((obs, oldValue, newValue) -> redraw());
+		getChildren().addAll(canvas, hbar, vbar);
+		model.addChangeListener(this::gridChanged);
+
+		canvas.setOnMouseClicked(e -> {
+			int col = (int) ((e.getX() + hbar.getValue()) / cellWidth);
+			int row = (int) ((e.getY() + vbar.getValue()) / cellHeight);
+			if (listener != null && row < model.getRows() && col < model.getColumns()) {
+				listener.cellClicked(row, col);
+			}
+		});
+		setOnScroll(e -> {
+			double dx = e.isShiftDown() && e.getDeltaX() == 0 ? e.getDeltaY() : e.getDeltaX();
+			double dy = e.isShiftDown() ? 0 : e.getDeltaY();
+			scrollTo(hbar, hbar.getValue() - dx);
+			scrollTo(vbar, vbar.getValue() - dy);
+			e.consume();
+		});
+	}
+
+	/**
+	 * setting what happens when a cell is clicked
+	 * @param listener
+	 */
+	public void setCellListener(CellListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * marking the cells of a column with a red border, scrolling it into view
+	 * @param col -1 for none
+	 */
+	public void setHighlightColumn(int col) {
+		int previous = highlightColumn;
+		highlightColumn = col;
+		double scroll = hbar.getValue();
+		if (col >= 0) {
+			double left = col * cellWidth;
+			double view = canvas.getWidth();
+			if (left < hbar.getValue()) {
+				scrollTo(hbar, left);
+			} else if (left + cellWidth > hbar.getValue() + view) {
+				scrollTo(hbar, left + cellWidth - view);
+			}
+		}
+		// a scroll redraws everything, otherwise only the two columns change
+		if (hbar.getValue() == scroll) {
+			paintColumn(previous);
+			paintColumn(col);
+		}
+	}
+
+	/**
+	 * column with the red border
+	 * @return -1 for none
+	 */
+	public int getHighlightColumn() {
+		return highlightColumn;
+	}
+
+	private static void scrollTo(ScrollBar bar, double value) {
+		bar.setValue(Math.max(bar.getMin(), Math.min(bar.getMax(), value)));
+	}
+
+	@Override
+	protected double computePrefWidth(double height) {
+		return Math.min(model.getColumns() * MIN_CELL_WIDTH, MAX_PREF_WIDTH) + 2 * BORDER;
+	}
+
+	@Override
+	protected double computePrefHeight(double width) {
+		return Math.min(model.getRows() * MIN_CELL_HEIGHT, MAX_PREF_HEIGHT) + 2 * BORDER;
+	}
+
+	/**
+	 * sizing the cells to the space given, and showing a scroll bar for a direction that doesn't fit
+	 */
+	@Override
+	protected void layoutChildren() {
+		double width = getWidth() - 2 * BORDER;
+		double height = getHeight() - 2 * BORDER;
+		double barWidth = vbar.prefWidth(-1);
+		double barHeight = hbar.prefHeight(-1);
+		int rows = model.getRows();
+		int cols = model.getColumns();
+
+		// a scroll bar takes room from the other direction, so check again once one is shown
+		boolean scrollX = cols * MIN_CELL_WIDTH > width;
+		boolean scrollY = rows * MIN_CELL_HEIGHT > height - (scrollX ? barHeight : 0);
+		scrollX = cols * MIN_CELL_WIDTH > width - (scrollY ? barWidth : 0);
+		double viewWidth = Math.max(0, width - (scrollY ? barWidth : 0));
+		double viewHeight = Math.max(0, height - (scrollX ? barHeight : 0));
+
+		cellWidth = scrollX ? MIN_CELL_WIDTH : viewWidth / cols;
+		cellHeight = scrollY ? MIN_CELL_HEIGHT : viewHeight / rows;
+		font = Font.font(Math.min(12, cellHeight * 0.5));
+
+		canvas.setWidth(viewWidth);
+		canvas.setHeight(viewHeight);
+		canvas.relocate(BORDER, BORDER);
+		clip.setWidth(getWidth());
+		clip.setHeight(getHeight());
+
+		layoutBar(hbar, scrollX, cols * cellWidth, viewWidth, cellWidth);
+		layoutBar(vbar, scrollY, rows * cellHeight, viewHeight, cellHeight);
+		hbar.resizeRelocate(BORDER, BORDER + viewHeight, viewWidth, barHeight);
+		vbar.resizeRelocate(BORDER + viewWidth, BORDER, barWidth, viewHeight);
+		redraw();
+	}
+
+	/**
+	 * scroll bar range in pixels of the content past the view
+	 * @param bar
+	 * @param visible
+	 * @param content
+	 * @param view
+	 * @param cell one cell, scrolled by the arrows
+	 */
+	private static void layoutBar(ScrollBar bar, boolean visible, double content, double view, double cell) {
+		bar.setVisible(visible);
+		bar.setMax(Math.max(0, content - view));
+		bar.setVisibleAmount(bar.getMax() * view / Math.max(content, 1));
+		bar.setUnitIncrement(cell);
+		bar.setBlockIncrement(view);
+		if (!visible) bar.setValue(0);
+		scrollTo(bar, bar.getValue());
+	}
+
+	/**
+	 * painting the cells in view from the model
+	 */
+	public void redraw() {
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		double width = canvas.getWidth();
+		double height = canvas.getHeight();
+		g.setFill(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		if (width <= 0 || height <= 0) return;
+
+		// colours are looked up once per redraw, not per cell
+		for (int opcode = 1; opcode < fills.length; opcode++) {
+			QCSGate gate = QCSGate.fromOpcode((byte) opcode);
+			String colour = gateColours.get(gate.name());
+			fills[opcode] = Color.web(colour != null ? colour : gate.getColour());
+		}
+
+		int firstCol = (int) (hbar.getValue() / cellWidth);
+		int firstRow = (int) (vbar.getValue() / cellHeight);
+		int lastCol = Math.min(model.getColumns() - 1, (int) ((hbar.getValue() + width) / cellWidth));
+		int lastRow = Math.min(model.getRows() - 1, (int) ((vbar.getValue() + height) / cellHeight));
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int col = firstCol; col <= lastCol; col++) {
+				paintCell(g, row, col);
+			}
+		}
+	}
+
+	/**
+	 * repainting what an edit of the model touched, only the listed cells unless it was a bulk change
+	 * @param changes
+	 */
+	private void gridChanged(QCSModel.Changes changes) {
+		if (changes.isFull() || fills[1] == null) {
+			redraw();
+			return;
+		}
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		for (int i = 0; i < changes.size(); i++) {
+			paintCell(g, changes.row(i), changes.col(i));
+		}
+	}
+
+	/**
+	 * repainting the cells of one column that are in view
+	 * @param col
+	 */
+	private void paintColumn(int col) {
+		if (col < 0 || col >= model.getColumns() || fills[1] == null) return;
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		int firstRow = (int) (vbar.getValue() / cellHeight);
+		int lastRow = Math.min(model.getRows() - 1, (int) ((vbar.getValue() + canvas.getHeight()) / cellHeight));
+		for (int row = firstRow; row <= lastRow; row++) {
+			paintCell(g, row, col);
+		}
+	}
+
+	/**
+	 * painting one cell, nothing when it is out of view
+	 * @param g
+	 * @param row
+	 * @param col
+	 */
+	private void paintCell(GraphicsContext g, int row, int col) {
+		double x = col * cellWidth - hbar.getValue();
+		double y = row * cellHeight - vbar.getValue();
+		if (x + cellWidth <= 0 || y + cellHeight <= 0 || x >= canvas.getWidth() || y >= canvas.getHeight()) return;
+
+		byte opcode = model.getOpcode(row, col);
+		g.setFill(opcode == QCSGate.EMPTY ? Color.WHITE : fills[opcode]);
+		g.fillRect(x, y, cellWidth, cellHeight);
+		if (opcode != QCSGate.EMPTY) {
+			g.setFont(font);
+			g.setTextAlign(TextAlignment.CENTER);
+			g.setTextBaseline(VPos.CENTER);
+			g.setFill(Color.BLACK);
+			g.fillText(QCSGate.fromOpcode(opcode).name(), x + cellWidth / 2, y + cellHeight / 2, cellWidth - 4);
+		}
+		g.setStroke(Color.BLACK);
+		g.setLineWidth(1);
+		g.strokeRect(x + 0.5, y + 0.5, cellWidth - 1, cellHeight - 1);
+		if (col == highlightColumn) {
+			g.setStroke(HIGHLIGHT);
+			g.setLineWidth(3);
+			g.strokeRect(x + 1.5, y + 1.5, cellWidth - 3, cellHeight - 3);
+		}
+	}
+}
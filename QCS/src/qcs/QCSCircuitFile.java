@@ -0,0 +1,358 @@
+package qcs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Reader and writer for the .qc files saved by the controller: one Qiskit style command per grid cell,
+ * then a "# Code Box" line and the free text of the code box. Shared by the GUI and the batch runner.
+ * Files are read as a stream of bytes: commands are parsed in place, integers straight from the
+ * digits, and gate names resolve to QCSGate constants, so a line costs no allocation.
+ */
+
+public final class QCSCircuitFile {
+
+	// line separating the grid commands from the code box text
+	public static final String CODE_BOX_MARKER = "# Code Box";
+
+	private static final byte[] MARKER = CODE_BOX_MARKER.getBytes(StandardCharsets.US_ASCII);
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Interface for receiving what the reader finds, in file order
+	 */
+	public interface Handler {
+		void gate(int row, int col, QCSGate gate);
+
+		void error(String message);
+	}
+
+	private QCSCircuitFile() {
+	}
+
+	/**
+	 * reading the grid commands of a file into the model, sized to the cells it uses
+	 * @param file
+	 * @param model
+	 * @throws IOException
+	 */
+	public static void read(Path file, QCSModel model) throws IOException {
+		Cells cells = new Cells();
+		try (FileChannel channel = FileChannel.open(file)) {
+			read(channel, cells, false);
+		}
+		if (!cells.getErrors().isEmpty()) {
+			throw new QCSController.QCSException(cells.getErrors().get(0));
+		}
+		int rows = 1, columns = 1;
+		for (int i = 0; i < cells.size(); i++) {
+			if (cells.row(i) < 0 || cells.col(i) < 0) {
+				throw new QCSController.QCSException("Gate position out of bounds (row: " + cells.row(i) + ", col: " + cells.col(i) + ")");
+			}
+			rows = Math.max(rows, cells.row(i) + 1);
+			columns = Math.max(columns, cells.col(i) + 1);
+		}
+		model.setGridSize(rows, columns);
+		for (int i = 0; i < cells.size(); i++) {
+			model.setGate(cells.row(i), cells.col(i), cells.gate(i));
+		}
+	}
+
+	/**
+	 * streaming the grid commands of a file to the handler. A line that can't be parsed is
+	 * reported and skipped, the rest of the file still loads.
+	 * @param channel
+	 * @param handler
+	 * @param keepCode collect the code box text, otherwise reading stops at the marker
+	 * @return the code box text, "" when not kept, or null if the file has no "# Code Box" line
+	 * @throws IOException
+	 */
+	public static String read(ReadableByteChannel channel, Handler handler, boolean keepCode) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		byte[] bytes = buffer.array();
+		byte[] line = new byte[256];
+		int length = 0;
+		boolean inCode = false;
+		ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+		while (channel.read(buffer) >= 0) {
+			int end = buffer.position();
+			int i = 0;
+			while (i < end && !inCode) {
+				byte b = bytes[i++];
+				if (b == '\n') {
+					inCode = endLine(line, length, handler);
+					length = 0;
+				} else {
+					if (length == line.length) line = Arrays.copyOf(line, length * 2);
+					line[length++] = b;
+				}
+			}
+			if (inCode) {
+				if (!keepCode) return "";
+				code.write(bytes, i, end - i);
+			}
+			buffer.clear();
+		}
+		if (!inCode && length > 0) inCode = endLine(line, length, handler);
+		if (!inCode) return null;
+		return keepCode ? code.toString(StandardCharsets.UTF_8) : "";
+	}
+
+	/**
+	 * one line of the grid section
+	 * @param line
+	 * @param length
+	 * @param handler
+	 * @return true for the line that starts the code box
+	 */
+	private static boolean endLine(byte[] line, int length, Handler handler) {
+		int from = 0, to = length;
+		while (from < to && (line[from] & 0xff) <= ' ') from++;
+		while (to > from && (line[to - 1] & 0xff) <= ' ') to--;
+		if (to - from == MARKER.length && Arrays.equals(line, from, to, MARKER, 0, MARKER.length)) return true;
+		if (to - from > 3 && line[from] == 'q' && line[from + 1] == 'c' && line[from + 2] == '.') {
+			parseCommand(line, from + 3, to, handler);
+		}
+		return false;
+	}
+
+	/**
+	 * parsing name(row, col, ...) in place and passing on the cell it fills
+	 * @param line
+	 * @param from first byte after "qc."
+	 * @param to
+	 * @param handler
+	 */
+	private static void parseCommand(byte[] line, int from, int to, Handler handler) {
+		int open = indexOf(line, from, to, (byte) '(');
+		int close = (open < 0) ? -1 : indexOf(line, open, to, (byte) ')');
+		if (open < 0 || close < 0) {
+			handler.error("Malformed Qiskit command: " + text(line, from, to));
+			return;
+		}
+
+		QCSGate gate = lookup(line, from, open);
+		if (gate == null) {
+			handler.error("Unsupported gate type in file: " + text(line, from, open).toUpperCase());
+			return;
+		}
+
+		// up to three integers, more are allowed and ignored
+		int[] args = new int[3];
+		int count = 0;
+		int i = open + 1;
+		while (true) {
+			while (i < close && line[i] == ' ') i++;
+			boolean negative = i < close && line[i] == '-';
+			if (negative) i++;
+			int start = i;
+			long value = 0;
+			while (i < close && line[i] >= '0' && line[i] <= '9' && value <= Integer.MAX_VALUE) {
+				value = value * 10 + (line[i++] - '0');
+			}
+			while (i < close && line[i] == ' ') i++;
+			if (i == start || value > Integer.MAX_VALUE || (i < close && line[i] != ',')) {
+				handler.error("Error parsing integers in line: " + text(line, from, to));
+				return;
+			}
+			if (count < args.length) args[count] = (int) (negative ? -value : value);
+			count++;
+			if (i == close) break;
+			i++; // the comma
+		}
+
+		int row = args[0];
+		int col = 0;
+		switch (gate) {
+			case CX, SWAP, CU:
+				if (count >= 2) col = Math.max(0, args[1] - 1);
+				break;
+			case CCX:
+				if (count >= 3) col = Math.max(0, args[1] - 1);
+				break;
+			default:
+				col = (count >= 2) ? args[1] : 0;
+				break;
+		}
+		handler.gate(row, col, gate);
+	}
+
+	/**
+	 * gate with the given Qiskit name, compared without case
+	 * @param line
+	 * @param from
+	 * @param to
+	 * @return null when unknown
+	 */
+	private static QCSGate lookup(byte[] line, int from, int to) {
+		for (int opcode = 1; opcode <= QCSGate.maxOpcode(); opcode++) {
+			QCSGate gate = QCSGate.fromOpcode((byte) opcode);
+			String name = gate.getQiskitName();
+			if (name.length() != to - from) continue;
+			int k = 0;
+			while (k < name.length() && Character.toLowerCase((char) line[from + k]) == name.charAt(k)) k++;
+			if (k == name.length()) return gate;
+		}
+		return null;
+	}
+
+	private static int indexOf(byte[] line, int from, int to, byte b) {
+		for (int i = from; i < to; i++) {
+			if (line[i] == b) return i;
+		}
+		return -1;
+	}
+
+	private static String text(byte[] line, int from, int to) {
+		return new String(line, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Qiskit code for every gate of the grid, row by row
+	 * @param model
+	 * @return
+	 */
+	public static String toQiskit(QCSModel model) {
+		StringBuilder code = new StringBuilder();
+		byte[] cells = model.getCells();
+		int columns = model.getColumns();
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != QCSGate.EMPTY) {
+				code.append(command(QCSGate.fromOpcode(cells[i]), i / columns, i % columns)).append("\n");
+			}
+		}
+		return code.toString();
+	}
+
+	/**
+	 * Converts a gate and its position to a Qiskit-compatible command.
+	 * @param gate
+	 * @param row
+	 * @param col
+	 * @return
+	 */
+	public static String command(String gate, int row, int col) {
+		QCSGate g = QCSGate.fromName(gate);
+		if (g == null) throw new QCSController.QCSException("Unrecognized gate: " + gate);
+		return command(g, row, col);
+	}
+
+	/**
+	 * Qiskit command for a gate at a position
+	 * @param gate
+	 * @param row
+	 * @param col
+	 * @return
+	 */
+	public static String command(QCSGate gate, int row, int col) {
+		String start = "qc." + gate.getQiskitName() + "(" + row + ", ";
+		return switch (gate) {
+			case U -> start + col + ", 0)";
+			case CX, SWAP, CU -> start + (col + 1) + ")";
+			case CCX -> start + (col + 1) + ", " + (col + 2) + ")";
+			case FUSED, FUSED2 -> throw new QCSController.QCSException("Unrecognized gate: " + gate);
+			default -> start + col + ")";
+		};
+	}
+
+	/**
+	 * length of the command for a gate at a position, counted without building it
+	 * @param gate
+	 * @param row
+	 * @param col
+	 * @return
+	 */
+	public static int commandLength(QCSGate gate, int row, int col) {
+		// "qc." name "(" row ", "
+		int start = 3 + gate.getQiskitName().length() + 1 + digits(row) + 2;
+		return switch (gate) {
+			case U -> start + digits(col) + 4;
+			case CX, SWAP, CU -> start + digits(col + 1) + 1;
+			case CCX -> start + digits(col + 1) + 2 + digits(col + 2) + 1;
+			case FUSED, FUSED2 -> throw new QCSController.QCSException("Unrecognized gate: " + gate);
+			default -> start + digits(col) + 1;
+		};
+	}
+
+	/**
+	 * decimal digits of a non-negative number
+	 * @param n
+	 * @return
+	 */
+	private static int digits(int n) {
+		int digits = 1;
+		while (n >= 10) {
+			n /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * Inner class collecting the cells and errors of a file in flat arrays
+	 */
+	public static final class Cells implements Handler {
+
+		private int size = 0;
+		private int[] rows = new int[1024];
+		private int[] cols = new int[1024];
+		private byte[] gates = new byte[1024];
+		private final List<String> errors = new ArrayList<>();
+
+		@Override
+		public void gate(int row, int col, QCSGate gate) {
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, size * 2);
+				cols = Arrays.copyOf(cols, size * 2);
+				gates = Arrays.copyOf(gates, size * 2);
+			}
+			rows[size] = row;
+			cols[size] = col;
+			gates[size] = gate.opcode();
+			size++;
+		}
+
+		@Override
+		public void error(String message) {
+			errors.add(message);
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int row(int i) {
+			return rows[i];
+		}
+
+		public int col(int i) {
+			return cols[i];
+		}
+
+		public QCSGate gate(int i) {
+			return QCSGate.fromOpcode(gates[i]);
+		}
+
+		/**
+		 * messages for the lines that were skipped
+		 * @return
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+	}
+}
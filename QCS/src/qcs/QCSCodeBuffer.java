@@ -0,0 +1,177 @@
+package qcs;
+
+import java.util.Arrays;
+import javafx.scene.control.TextArea;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Keeps the code box in step with the grid one line at a time. Every gate is one line, in row
+ * then column order, and the character count of each block of cells is kept in a Fenwick tree,
+ * so finding where a cell's line starts takes a log of the grid size plus a scan of one block.
+ * Only that line of the text area is replaced. Once the text is edited by hand, or set from a
+ * file, the next change writes the whole code again as before.
+ */
+
+public class QCSCodeBuffer {
+
+	// cells per block of the index, the scan inside a block is at most this long
+	private static final int BLOCK = 64;
+	// changes at once above which writing the whole text is cheaper
+	private static final int MAX_PATCHES = 1024;
+
+	/**
+	 * Interface for the text the code is written into, the code box or a plain buffer
+	 */
+	interface Text {
+		void set(String text);
+
+		void replace(int start, int end, String text);
+	}
+
+	private final QCSModel model;
+	private final Text text;
+	// opcodes the text shows right now, the model may already be ahead of it
+	private byte[] shown = new byte[0];
+	private int columns = 1;
+	// Fenwick tree of the characters in each block, 1-based
+	private int[] tree = new int[1];
+	private boolean inSync = false;
+	private boolean updating = false;
+
+	/**
+	 * constructor
+	 * @param model
+	 * @param area
+	 */
+	public QCSCodeBuffer(QCSModel model, TextArea area) {
+		this(model, new Text() {
+			@Override
+			public void set(String text) {
+				area.setText(text);
+			}
+
+			@Override
+			public void replace(int start, int end, String text) {
+				area.replaceText(start, end, text);
+			}
+		});
+		area.textProperty().addListener((obs, oldText, newText) -> {
+			if (!updating) inSync = false;
+		});
+	}
+
+	/**
+	 * constructor writing into any text, which is never edited by hand
+	 * @param model
+	 * @param text
+	 */
+	QCSCodeBuffer(QCSModel model, Text text) {
+		this.model = model;
+		this.text = text;
+	}
+
+	/**
+	 * writing the code for the whole grid and indexing it again
+	 */
+	public void rebuild() {
+		columns = model.getColumns();
+		shown = Arrays.copyOf(model.getCells(), model.getCells().length);
+		int blocks = (shown.length + BLOCK - 1) / BLOCK;
+		tree = new int[blocks + 1];
+		for (int b = 0; b < blocks; b++) {
+			int chars = 0;
+			for (int i = b * BLOCK; i < Math.min(shown.length, (b + 1) * BLOCK); i++) {
+				chars += length(i);
+			}
+			// building the tree in place: each node passes its sum up to its parent
+			tree[b + 1] += chars;
+			int parent = (b + 1) + ((b + 1) & -(b + 1));
+			if (parent <= blocks) tree[parent] += tree[b + 1];
+		}
+		setText(() -> text.set(QCSCircuitFile.toQiskit(model)));
+		inSync = true;
+	}
+
+	/**
+	 * patching the lines of the cells a model edit changed
+	 * @param changes
+	 */
+	public void apply(QCSModel.Changes changes) {
+		if (!inSync || changes.isFull() || changes.size() > MAX_PATCHES || model.getColumns() != columns
+				|| model.getCells().length != shown.length) {
+			rebuild();
+			return;
+		}
+		for (int i = 0; i < changes.size(); i++) {
+			patch(changes.row(i), changes.col(i));
+		}
+	}
+
+	/**
+	 * replacing the line of one cell with what the model holds now
+	 * @param row
+	 * @param col
+	 */
+	private void patch(int row, int col) {
+		int index = row * columns + col;
+		byte opcode = model.getOpcode(row, col);
+		if (shown[index] == opcode) return;
+
+		int start = offset(index);
+		int oldLength = length(index);
+		shown[index] = opcode;
+		String line = (opcode == QCSGate.EMPTY) ? "" : QCSCircuitFile.command(QCSGate.fromOpcode(opcode), row, col) + "\n";
+		setText(() -> text.replace(start, start + oldLength, line));
+		add(index / BLOCK, line.length() - oldLength);
+	}
+
+	/**
+	 * where the line of a cell starts, or would start
+	 * @param index
+	 * @return
+	 */
+	private int offset(int index) {
+		int block = index / BLOCK;
+		int chars = 0;
+		for (int b = block; b > 0; b -= b & -b) {
+			chars += tree[b];
+		}
+		for (int i = block * BLOCK; i < index; i++) {
+			chars += length(i);
+		}
+		return chars;
+	}
+
+	private void add(int block, int delta) {
+		for (int b = block + 1; b < tree.length; b += b & -b) {
+			tree[b] += delta;
+		}
+	}
+
+	/**
+	 * characters of the line shown for a cell, with its newline
+	 * @param index
+	 * @return 0 for an empty cell
+	 */
+	private int length(int index) {
+		if (shown[index] == QCSGate.EMPTY) return 0;
+		return QCSCircuitFile.commandLength(QCSGate.fromOpcode(shown[index]), index / columns, index % columns) + 1;
+	}
+
+	/**
+	 * changing the text without it counting as a hand edit
+	 * @param change
+	 */
+	private void setText(Runnable change) {
+		updating = true;
+		try {
+			change.run();
+		} finally {
+			updating = false;
+		}
+	}
+}
@@ -1,16 +1,18 @@
 package qcs;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.util.List;
 import java.util.Map;
-import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -20,6 +22,7 @@ import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Region;
@@ -40,28 +43,48 @@ import javafx.stage.Window;
 
 public class QCSController {
 
-	TextArea textBox;
+	// outcomes charted by name, the rest share one "other" bar
+	private static final int HISTOGRAM_BARS = 8;
+	// messages kept in the message area, older ones are dropped
+	private static final int LOG_LINES = 2000;
+
+	QCSLogConsole console;
 	TextArea codeBox;
+	private QCSCodeBuffer codeBuffer;
 	private String selectedGate;
 	private String selectedGateColour;
 	private Scene scene;
-	private ResourceBundle bundle;
-	private Button[][] gridButtons;
+	private QCSCircuitCanvas circuitGrid;
 	private int gridRows;
 	private int gridColumns;
 	private QCSView view;
+	private QCSModel model;
+	private QCSEngine engine;
+	// the engine's thread count as last set, read here instead of from the engine on the FX thread
+	private int engineThreads;
 	int currentStepColumn = 0;
 	private String multiGateInProgress = null;
 	private int remainingMultiPlacements = 0;
 
+	// the engine belongs to this one thread, so jobs run in the order they were asked for
+	private final ExecutorService simulator = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "qcs-simulation");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// bumped by Cancel, jobs queued under an older value are skipped
+	private final AtomicInteger generation = new AtomicInteger();
+	private int runningJobs = 0;
+	// latest progress of the simulating thread, shown by at most one pending runLater
+	private volatile double latestProgress;
+	private final AtomicBoolean progressQueued = new AtomicBoolean();
+
 	/**
 	 * Constructor
 	 * @param textBox
-	 * @param bundle
 	 */
-	public QCSController(TextArea textBox, ResourceBundle bundle) {
-		this.textBox = textBox;
-		this.bundle = bundle;
+	public QCSController(TextArea textBox) {
+		this.console = new QCSLogConsole(textBox, LOG_LINES);
 	}
 
 	/**
@@ -72,14 +95,104 @@ public class QCSController {
 		this.view = view;
 	}
 
+	/**
+	 * setting the model the grid writes to and the engine that simulates it
+	 * @param model
+	 */
+	public void setModel(QCSModel model) {
+		this.model = model;
+		this.engine = new QCSEngine(model);
+		this.engineThreads = engine.getThreads();
+		engine.setProgressListener(this::publishProgress);
+		model.addChangeListener(this::modelChanged);
+	}
+
+	/**
+	 * keeping the engine and code box in step with an edit of the model. Checkpoints are only
+	 * dropped from the first column that changed, and only the changed lines of code are rewritten.
+	 * @param changes
+	 */
+	private void modelChanged(QCSModel.Changes changes) {
+		if (changes.getFirstColumn() != Integer.MAX_VALUE) invalidateFrom(changes.getFirstColumn());
+		if (codeBuffer == null || (!changes.isFull() && changes.size() == 0)) return;
+		try {
+			codeBuffer.apply(changes);
+		// Throws a QCSException if a gate is unrecognized.
+		} catch (QCSException e) {
+			console.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Interface for work done on the simulation thread. What it returns runs afterwards
+	 * on the FX thread to show the results.
+	 */
+	@FunctionalInterface
+	private interface Job {
+		Runnable run();
+	}
+
+	/**
+	 * running a job on the simulation thread, the window stays responsive meanwhile
+	 * @param job
+	 */
+	private void simulate(Job job) {
+		int jobGeneration = generation.get();
+		// The grid can change while the job runs, so it works on a copy taken here.
+		QCSModel snapshot = model.copy();
+		if (runningJobs++ == 0) view.setBusy(true);
+		simulator.execute(() -> {
+			Runnable publish = null;
+			try {
+				engine.clearCancel();
+				engine.setModel(snapshot);
+				if (generation.get() == jobGeneration) publish = job.run();
+			// Throws if a column holds an incomplete gate or the job was cancelled.
+			} catch (QCSException e) {
+				publish = () -> console.error(e.getMessage());
+			} catch (RuntimeException e) {
+				publish = () -> console.error(e.toString());
+			} finally {
+				Runnable result = publish;
+				Platform.runLater(() -> {
+					if (result != null) result.run();
+					if (--runningJobs == 0) view.setBusy(false);
+				});
+			}
+		});
+	}
+
+	/**
+	 * progress of the gates being applied, called for every gate on the simulation thread
+	 * @param done
+	 * @param total
+	 */
+	private void publishProgress(int done, int total) {
+		latestProgress = (double) done / total;
+		if (progressQueued.compareAndSet(false, true)) {
+			Platform.runLater(() -> {
+				progressQueued.set(false);
+				view.updateProgress(latestProgress);
+			});
+		}
+	}
+
+	/**
+	 * stopping the running job before its next gate and dropping the queued ones
+	 */
+	public void cancelSimulation() {
+		generation.incrementAndGet();
+		engine.cancel();
+	}
+
 	/**
 	 * setting the variables for the grid spaces
-	 * @param gridButtons
+	 * @param circuitGrid
 	 * @param rows
 	 * @param columns
 	 */
-	public void setGridButtons(Button[][] gridButtons, int rows, int columns) {
-		this.gridButtons = gridButtons;
+	public void setCircuitGrid(QCSCircuitCanvas circuitGrid, int rows, int columns) {
+		this.circuitGrid = circuitGrid;
 		this.gridRows = rows;
 		this.gridColumns = columns;
 	}
@@ -102,7 +215,7 @@ public class QCSController {
 	        try {
 	            throw new QCSException("Gate or colour cannot be null.");
 	        } catch (QCSException e) {
-	            textBox.appendText("Error: " + e.getMessage() + "\n");
+	            console.error(e.getMessage());
 	            return;
 	        }
 	    }
@@ -159,6 +272,7 @@ public class QCSController {
 	 */
 	public void setCodeBox(TextArea codeBox) {
 		this.codeBox = codeBox;
+		this.codeBuffer = new QCSCodeBuffer(model, codeBox);
 	}
 
 	/**
@@ -166,45 +280,46 @@ public class QCSController {
 	 */
 	public void saveCircuit() {
 	    try {
-	        if (gridButtons == null) {
+	        if (circuitGrid == null) {
 	            throw new QCSException("Grid not set. Cannot save circuit.");
 	        }
 
 	        Window window = codeBox.getScene().getWindow();
 	        FileChooser fileChooser = new FileChooser();
 	        fileChooser.setTitle("Save Quantum Circuit");
-	        fileChooser.getExtensionFilters().add(
-	            new FileChooser.ExtensionFilter("Qiskit Circuit Files (*.qc)", "*.qc")
+	        fileChooser.getExtensionFilters().addAll(
+	            new FileChooser.ExtensionFilter("Qiskit Circuit Files (*.qc)", "*.qc"),
+	            new FileChooser.ExtensionFilter("Binary Circuit Files (*.qcb)", "*.qcb")
 	        );
 
 	        File file = fileChooser.showSaveDialog(window);
 	        if (file == null) return;
 
+	        if (QCSCircuitBinary.isBinary(file.toPath())) {
+	            try {
+	                QCSCircuitBinary.write(file.toPath(), model);
+	                console.info("Circuit saved to " + file.getName());
+	            } catch (IOException e) {
+	                throw new QCSException("Error saving file: " + e.getMessage());
+	            }
+	            return;
+	        }
+
 	        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
 	            writer.write("# Circuit grid gates\n");
-	            for (int row = 0; row < gridRows; row++) {
-	                for (int col = 0; col < gridColumns; col++) {
-	                    Button btn = gridButtons[row][col];
-	                    String gate = btn.getText();
-	                    if (gate != null && !gate.isEmpty()) {
-	                        String qiskitCommand = gateToQiskitCommand(gate, row, col);
-	                        if (qiskitCommand != null)
-	                            writer.write(qiskitCommand + "\n");
-	                    }
-	                }
-	            }
+	            writer.write(QCSCircuitFile.toQiskit(model));
 
 	            writer.write("\n# Code Box\n");
 	            writer.write(codeBox.getText());
 
-	            textBox.appendText("Circuit saved to " + file.getName() + "\n");
+	            console.info("Circuit saved to " + file.getName());
 
 	        } catch (IOException e) {
 	            throw new QCSException("Error saving file: " + e.getMessage());
 	        }
 
 	    } catch (QCSException e) {
-	        textBox.appendText("Error: " + e.getMessage() + "\n");
+	        console.error(e.getMessage());
 	    }
 	}
 
@@ -213,7 +328,7 @@ public class QCSController {
 	 */
 	public void loadCircuit() {
 	    try {
-	        if (gridButtons == null) {
+	        if (circuitGrid == null) {
 	            throw new QCSException("Grid not set. Cannot load circuit.");
 	        }
 
@@ -221,48 +336,85 @@ public class QCSController {
 
 	        FileChooser fileChooser = new FileChooser();
 	        fileChooser.setTitle("Load Quantum Circuit");
-	        fileChooser.getExtensionFilters().add(
-	            new FileChooser.ExtensionFilter("Qiskit Circuit Files (*.qc)", "*.qc")
+	        fileChooser.getExtensionFilters().addAll(
+	            new FileChooser.ExtensionFilter("Circuit Files (*.qc, *.qcb)", "*.qc", "*.qcb"),
+	            new FileChooser.ExtensionFilter("Qiskit Circuit Files (*.qc)", "*.qc"),
+	            new FileChooser.ExtensionFilter("Binary Circuit Files (*.qcb)", "*.qcb")
 	        );
 
 	        File file = fileChooser.showOpenDialog(window);
 	        if (file == null) return;
 
-	        try {
-	            String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-	            String[] parts = content.split("(?m)^# Code Box\\s*$");
-	            if (parts.length < 2) {
+	        if (QCSCircuitBinary.isBinary(file.toPath())) {
+	            loadBinary(file);
+	            return;
+	        }
+
+	        try (FileChannel channel = FileChannel.open(file.toPath())) {
+	            QCSCircuitFile.Cells cells = new QCSCircuitFile.Cells();
+	            String codeSection = QCSCircuitFile.read(channel, cells, true);
+	            if (codeSection == null) {
 	                throw new QCSException("Invalid file format.");
 	            }
 
-	            String gridSection = parts[0];
-	            String codeSection = parts[1];
+	            cancelSimulation();
+	            simulator.execute(engine::release);
 
-	            for (int r = 0; r < gridRows; r++) {
-	                for (int c = 0; c < gridColumns; c++) {
-	                    Button btn = gridButtons[r][c];
-	                    btn.setText("");
-	                    btn.setStyle("-fx-border-colour: black; -fx-border-width: 1;");
-	                }
-	            }
-
-	            BufferedReader reader = new BufferedReader(new StringReader(gridSection));
-	            String line;
-	            while ((line = reader.readLine()) != null) {
-	                line = line.trim();
-	                if (line.isEmpty() || line.startsWith("#")) continue;
-	                parseAndApplyGate(line);
+	            for (String error : cells.getErrors()) {
+	                console.error(error);
 	            }
+	            // one batch, so the grid is drawn and the engine told once for the whole file
+	            model.batch(() -> {
+	                model.resetGrid();
+	                for (int i = 0; i < cells.size(); i++) {
+	                    int row = cells.row(i);
+	                    int col = cells.col(i);
+	                    if (row < 0 || row >= gridRows || col < 0 || col >= gridColumns) {
+	                        console.error("Gate position out of bounds (row: " + row + ", col: " + col + ")");
+	                        continue;
+	                    }
+	                    model.setGate(row, col, cells.gate(i));
+	                }
+	            });
 
 	            codeBox.setText(codeSection.trim());
-	            textBox.appendText("Circuit loaded from " + file.getName() + "\n");
+	            console.info("Circuit loaded from " + file.getName());
 
 	        } catch (IOException e) {
 	            throw new QCSException("Error loading file: " + e.getMessage());
 	        }
 
 	    } catch (QCSException e) {
-	        textBox.appendText("Error: " + e.getMessage() + "\n");
+	        console.error(e.getMessage());
+	    }
+	}
+
+	/**
+	 * loading a .qcb file, the file is checked in full before the grid is touched
+	 * @param file
+	 */
+	private void loadBinary(File file) {
+	    try {
+	        QCSCircuitBinary.Grid grid = QCSCircuitBinary.read(file.toPath());
+
+	        cancelSimulation();
+	        simulator.execute(engine::release);
+
+	        int[] outside = new int[1];
+	        model.batch(() -> {
+	            model.resetGrid();
+	            outside[0] = grid.applyTo(model);
+	        });
+	        view.showPhaseParams();
+	        updateCodeBoxFromGrid();
+	        if (outside[0] > 0) {
+	            console.error(outside[0] + " gates are outside the grid (saved as "
+	                    + grid.getRows() + "x" + grid.getColumns() + ")");
+	        }
+	        console.info("Circuit loaded from " + file.getName());
+
+	    } catch (IOException e) {
+	        throw new QCSException("Error loading file: " + e.getMessage());
 	    }
 	}
 
@@ -271,10 +423,10 @@ public class QCSController {
 	 */
 	public void showAbout() {
 		Alert alert = new Alert(Alert.AlertType.INFORMATION);
-		alert.setTitle(bundle.getString("menu.about"));
-		alert.setHeaderText(bundle.getString("menu.about"));
+		alert.setTitle(model.bundle.getString("menu.about"));
+		alert.setHeaderText(model.bundle.getString("menu.about"));
 
-		Image img = new Image(getClass().getResourceAsStream("qcs.png"));
+		Image img = new Image(QCSWarmup.open("qcs.png"));
 		ImageView logo = new ImageView(img);
 		logo.setFitHeight(50);
 		logo.setPreserveRatio(true);
@@ -298,148 +450,14 @@ public class QCSController {
 	 */
 	public void showReadme() {
 		Alert alert = new Alert(Alert.AlertType.INFORMATION);
-		alert.setTitle(bundle.getString("menu.readme"));
-		alert.setHeaderText(bundle.getString("menu.readme"));
+		alert.setTitle(model.bundle.getString("menu.readme"));
+		alert.setHeaderText(model.bundle.getString("menu.readme"));
 		alert.setContentText("ReadMe etc.\n\nBianca & David");
 		alert.setResizable(true);
 		alert.getDialogPane().setMinHeight(Region.USE_PREF_SIZE);
 		alert.showAndWait();
 	}
 	
-	/**
-	 * Converts a gate and its position to a Qiskit-compatible command.
-	 * @param gate
-	 * @param row
-	 * @param col
-	 * @return
-	 */
-	private String gateToQiskitCommand(String gate, int row, int col) {
-		try {
-			switch (gate.toUpperCase()) {
-				case "I": return "qc.id(" + row + ", " + col + ")";
-				case "X": return "qc.x(" + row + ", " + col + ")";
-				case "Y": return "qc.y(" + row + ", " + col + ")";
-				case "Z": return "qc.z(" + row + ", " + col + ")";
-				case "H": return "qc.h(" + row + ", " + col + ")";
-				case "S": return "qc.s(" + row + ", " + col + ")";
-				case "T": return "qc.t(" + row + ", " + col + ")";
-				case "U": return "qc.u(" + row + ", " + col + ", 0)";
-				case "CX": return "qc.cx(" + row + ", " + (col + 1) + ")";
-				case "SWAP": return "qc.swap(" + row + ", " + (col + 1) + ")";
-				case "CU": return "qc.cu(" + row + ", " + (col + 1) + ")";
-				case "CCX": return "qc.ccx(" + row + ", " + (col + 1) + ", " + (col + 2) + ")";
-				case "BARRIER": return "qc.barrier(" + row + ", " + col + ")";
-				default: throw new QCSException("Unrecognized gate: " + gate);
-			}
-		// Throws a QCSException if the gate is unrecognized.
-		} catch (QCSException e) {
-			textBox.appendText("Error: " + e.getMessage() + "\n");
-			return null;
-		}
-	}
-
-	/**
-	 * Parses a line of Qiskit code and applies the gate to the appropriate button on the grid.
-	 * @param line
-	 */
-	private void parseAndApplyGate(String line) {
-		if (!line.startsWith("qc.")) return;
-
-		try {
-			line = line.substring(3); // Remove 'qc.'
-
-			int openParen = line.indexOf('(');
-			int closeParen = line.indexOf(')');
-			if (openParen < 0 || closeParen < 0)
-				throw new QCSException("Malformed Qiskit command: " + line);
-
-			String gateName = line.substring(0, openParen).toUpperCase();
-			String args = line.substring(openParen + 1, closeParen);
-			String[] tokens = args.split(",");
-
-			int[] qubits = new int[tokens.length];
-			for (int i = 0; i < tokens.length; i++) {
-				qubits[i] = Integer.parseInt(tokens[i].trim());
-			}
-
-			int row = qubits[0];
-			int col = 0;
-
-			switch (gateName) {
-				case "ID", "U", "X", "Y", "Z", "H", "S", "T":
-					col = (qubits.length >= 2) ? qubits[1] : 0;
-					break;
-				case "CX", "SWAP", "CU":
-					if (qubits.length >= 2) {
-						col = qubits[1] - 1;
-						if (col < 0) col = 0;
-					}
-					break;
-				case "CCX":
-					if (qubits.length >= 3) {
-						col = qubits[1] - 1;
-						if (col < 0) col = 0;
-					}
-					break;
-				case "BARRIER":
-					col = (qubits.length >= 2) ? qubits[1] : 0;
-					break;
-				default:
-					throw new QCSException("Unsupported gate type in file: " + gateName);
-			}
-
-			if (row < 0 || row >= gridRows || col < 0 || col >= gridColumns)
-				throw new QCSException("Gate position out of bounds (row: " + row + ", col: " + col + ")");
-
-			Button btn = gridButtons[row][col];
-			if (btn == null) throw new QCSException("Grid button is null at (" + row + "," + col + ")");
-
-			String btnText = switch (gateName) {
-				case "ID" -> "I";
-				case "U" -> "U";
-				case "CCX" -> "CCX";
-				case "CX" -> "CX";
-				case "SWAP" -> "SWAP";
-				case "CU" -> "CU";
-				default -> gateName;
-			};
-
-			btn.setText(btnText);
-			btn.setStyle("-fx-background-colour: " + gatecolourFromName(btnText) +
-			             "; -fx-border-colour: black; -fx-border-width: 1px;");
-
-		// Throws QCSException for malformed or invalid commands.
-		} catch (NumberFormatException e) {
-			textBox.appendText("Error parsing integers in line: " + line + "\n");
-		} catch (QCSException e) {
-			textBox.appendText("Error: " + e.getMessage() + "\n");
-		}
-	}
-
-	/**
-	 * getting the default gate colours
-	 * @param gate
-	 * @return
-	 */
-	private String gatecolourFromName(String gate) {
-		return switch (gate.toUpperCase()) {
-		case "I" -> "#ffadad";
-		case "X" -> "#ffd6a5";
-		case "Y" -> "#fdffb6";
-		case "Z" -> "#caffbf";
-		case "H" -> "#9bf6ff";
-		case "S" -> "#a0c4ff";
-		case "T" -> "#bdb2ff";
-		case "U" -> "#ffc6ff";
-		case "CX" -> "#d0f4de";
-		case "SWAP" -> "#fef9c7";
-		case "CU" -> "#fcd5ce";
-		case "CCX" -> "#cdb4db";
-		case "BARRIER" -> "#cacccb";
-		default -> "lightgray";
-		};
-	}
-
 	/**
 	 * calling the css files and changing the look and feel
 	 * @param lookAndFeel
@@ -458,13 +476,13 @@ public class QCSController {
 		if (cssFile != null) {
 			URL url = getClass().getResource(cssFile);
 			if (url == null) {
-				textBox.appendText("Failed to load CSS file: " + cssFile + "\n");
+				console.warning("Failed to load CSS file: " + cssFile);
 			} else {
 				scene.getStylesheets().add(url.toExternalForm());
-				textBox.appendText("Appearance changed to " + lookAndFeel + "\n");
+				console.info("Appearance changed to " + lookAndFeel);
 			}
 		} else {
-			textBox.appendText("Reverted to default appearance\n");
+			console.info("Reverted to default appearance");
 		}
 	}
 
@@ -472,24 +490,110 @@ public class QCSController {
 	 * appending the grid selections to the code area on the right
 	 */
 	public void updateCodeBoxFromGrid() {
-		if (gridButtons == null) return;
-
-		StringBuilder code = new StringBuilder();
-
-		for (int r = 0; r < gridRows; r++) {
-			for (int c = 0; c < gridColumns; c++) {
-				Button btn = gridButtons[r][c];
-				String gate = btn.getText();
-				if (gate != null && !gate.isEmpty()) {
-					String cmd = gateToQiskitCommand(gate, r, c);
-					if (cmd != null) {
-						code.append(cmd).append("\n");
-					}
-				}
+		if (codeBuffer == null) return;
+
+		try {
+			codeBuffer.rebuild();
+		// Throws a QCSException if a gate is unrecognized.
+		} catch (QCSException e) {
+			console.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * pop up for choosing how many threads the simulation uses
+	 */
+	public void showThreadsDialog() {
+		TextInputDialog dialog = new TextInputDialog(Integer.toString(engineThreads));
+		dialog.setTitle(model.bundle.getString("menu.threads"));
+		dialog.setHeaderText("Number of threads (1 - " + Runtime.getRuntime().availableProcessors() + " cores available):");
+
+		dialog.showAndWait().ifPresent(text -> {
+			try {
+				int threads = Integer.parseInt(text.trim());
+				simulate(() -> {
+					engine.setThreads(threads);
+					int set = engine.getThreads();
+					return () -> {
+						engineThreads = set;
+						console.info("Simulation threads set to " + set);
+					};
+				});
+			} catch (NumberFormatException e) {
+				console.error("Please enter a valid integer.");
+			} catch (QCSException e) {
+				console.error(e.getMessage());
 			}
+		});
+	}
+
+	/**
+	 * charting the heaviest outcomes as percentages, with everything else in one "other" bar
+	 * @param top
+	 * @param qubits
+	 */
+	private void showHistogram(QCSTopK top, int qubits) {
+		String[] keys = top.names(qubits);
+		double[] weights = top.weights();
+		double other = top.getOther();
+		int bars = keys.length + (other > 0 ? 1 : 0);
+		String[] names = new String[bars];
+		double[] percents = new double[bars];
+		for (int i = 0; i < keys.length; i++) {
+			names[i] = keys[i];
+			percents[i] = weights[i] * 100.0 / top.getTotal();
 		}
+		if (other > 0) {
+			names[bars - 1] = "other";
+			percents[bars - 1] = other * 100.0 / top.getTotal();
+		}
+		view.showHistogram(names, percents);
+	}
 
-		codeBox.setText(code.toString());
+	/**
+	 * pop up for the number of shots, then measures the finished circuit and charts the
+	 * most frequent outcomes
+	 */
+	public void measureShots() {
+		TextInputDialog dialog = new TextInputDialog("100000");
+		dialog.setTitle(model.bundle.getString("measure"));
+		dialog.setHeaderText("Number of shots:");
+
+		dialog.showAndWait().ifPresent(text -> {
+			try {
+				if (circuitGrid == null) throw new QCSException("Grid not initialized.");
+				long shots = Long.parseLong(text.trim());
+				int rows = gridRows;
+				int columns = gridColumns;
+
+				simulate(() -> {
+					engine.runTo(columns);
+					int column = engine.getColumn();
+
+					long start = System.nanoTime();
+					QCSShotSampler.Counts counts = engine.sample(shots);
+					QCSTopK top = QCSTopK.ofCounts(counts, HISTOGRAM_BARS, engine.getPool(), engine::isCancelled);
+					long elapsed = System.nanoTime() - start;
+
+					return () -> {
+						currentStepColumn = column;
+						view.updateStepLabel(currentStepColumn);
+						showHistogram(top, rows);
+						console.info(String.format("%d shots, %d distinct outcomes (%.1f ms)",
+								shots, counts.size(), elapsed / 1e6));
+						String[] keys = top.names(rows);
+						double[] weights = top.weights();
+						for (int i = 0; i < keys.length; i++) {
+							console.info(keys[i] + ": " + (long) weights[i]);
+						}
+					};
+				});
+			} catch (NumberFormatException e) {
+				console.error("Please enter a valid integer.");
+			} catch (QCSException e) {
+				console.error(e.getMessage());
+			}
+		});
 	}
 
 	/**
@@ -531,6 +635,7 @@ public class QCSController {
 					gateButton.setOnMouseEntered(evt -> gateButton.setStyle("-fx-border-width: 1px; -fx-font-size: 10px; -fx-border-colour: white; -fx-background-colour: " + fxColour));
 					gateButton.setOnMouseExited(evt -> gateButton.setStyle("-fx-background-colour: " + fxColour + "; -fx-border-colour: black; -fx-font-size: 10px; -fx-border-width: 1px;"));
 
+					if (circuitGrid != null) circuitGrid.redraw();
 					colourStage.close();
 				});
 
@@ -564,7 +669,7 @@ public class QCSController {
 	 */
 	public void handleNewCircuit() {
 		try {
-			if (gridButtons == null) {
+			if (circuitGrid == null) {
 				throw new QCSException("Cannot reset: grid not initialized.");
 			}
 
@@ -572,107 +677,161 @@ public class QCSController {
 			selectedGate = null;
 			selectedGateColour = null;
 
-			// Clear the grid
-			for (int row = 0; row < gridRows; row++) {
-				for (int col = 0; col < gridColumns; col++) {
-					Button btn = gridButtons[row][col];
-					btn.setText("");
-					btn.setStyle("-fx-border-colour: black; -fx-border-width: 1px;");
-				}
-			}
+			// Stop the running job, then clear the grid
+			cancelSimulation();
+			model.resetGrid();
+			simulator.execute(engine::release);
 
 			// Reset graph, messages, and gate button colours
 			if (view != null) view.resetBarGraph();
-			if (textBox != null) textBox.clear();
+			console.clear();
 			if (codeBox != null) codeBox.clear();
 			view.resetGateColoursToDefault();
+			circuitGrid.setHighlightColumn(-1);
 
 			currentStepColumn = 0;
 			view.updateStepLabel(currentStepColumn); // reset label
 			
 			// Throws exception if grid is not initialized.
 		} catch (QCSException e) {
-			textBox.appendText("Error: " + e.getMessage() + "\n");
+			console.error(e.getMessage());
 		}
 	}
 
 	/**
-	 * Advances simulation by one column step. Highlights column and updates tensor bar.
+	 * Advances simulation by one column step. Applies the column's gates to the
+	 * state vector, highlights the column and updates tensor bar.
 	 */
 	public void stepSimulation() {
 		try {
-			if (gridButtons == null) throw new QCSException("Grid not initialized.");
+			if (circuitGrid == null) throw new QCSException("Grid not initialized.");
 
 			if (currentStepColumn >= gridColumns) return;
 
-			// Remove red border from previous column
-			if (currentStepColumn > 0) {
-				for (int row = 0; row < gridRows; row++) {
-					Button btn = gridButtons[row][currentStepColumn - 1];
-					btn.setStyle(btn.getStyle() + "; -fx-border-color: black; -fx-border-width: 1px;");
-				}
-			}
+			simulate(() -> {
+				List<QCSOperation> ops = engine.step();
+				String report = engine.stepReport();
+				int column = engine.getColumn();
 
-			// Highlight current column
-			for (int row = 0; row < gridRows; row++) {
-				Button btn = gridButtons[row][currentStepColumn];
-				btn.setStyle(btn.getStyle() + "; -fx-border-color: red; -fx-border-width: 3px;");
-			}
+				return () -> {
+					// Highlight current column, which clears the previous one
+					circuitGrid.setHighlightColumn(column - 1);
 
-			// Build tensor product info
-			StringBuilder tensorInfo = new StringBuilder("Tensor Product: ");
-			for (int row = 0; row < gridRows; row++) {
-				String text = gridButtons[row][currentStepColumn].getText();
-				if (text != null && !text.isBlank()) {
-					tensorInfo.append(text).append("(q").append(row).append(") | ");
-					textBox.appendText(text + "(q" + row + ") | ");
-				}
-			}
-			textBox.appendText("\n");
-			view.updateTensorBar(tensorInfo.toString().trim());
+					// Build tensor product info, logged as one line for the whole column
+					StringBuilder line = new StringBuilder();
+					for (QCSOperation op : ops) {
+						line.append(op).append(" | ");
+					}
+					console.info(line.toString());
+					if (report != null) console.info(report);
+					view.updateTensorBar(("Tensor Product: " + line).trim());
 
-			currentStepColumn++;
-			view.updateStepLabel(currentStepColumn);
+					currentStepColumn = column;
+					view.updateStepLabel(currentStepColumn);
+				};
+			});
 
 		// Throws if grid is not initialized.
 		} catch (QCSException e) {
-			textBox.appendText("Error: " + e.getMessage() + "\n");
+			console.error(e.getMessage());
 		}
 	}
 
 	/**
-	 * Resets simulation to first column and removes visual highlights.
+	 * Applies all remaining columns at once, with the gates fused where possible.
 	 */
-	public void resetStepSimulation() {
+	public void runSimulation() {
 		try {
-			if (gridButtons == null) throw new QCSException("Grid not initialized.");
+			if (circuitGrid == null) throw new QCSException("Grid not initialized.");
 
-			currentStepColumn = 0;
-			view.updateStepLabel(currentStepColumn); // reset label
+			if (currentStepColumn >= gridColumns) return;
+			int rows = gridRows;
+			int columns = gridColumns;
+
+			simulate(() -> {
+				engine.runTo(columns);
+				QCSTopK top = engine.topOutcomes(HISTOGRAM_BARS);
+				String report = engine.stepReport();
+				int column = engine.getColumn();
+
+				return () -> {
+					currentStepColumn = column;
+					view.updateStepLabel(currentStepColumn);
+					showHistogram(top, rows);
+
+					// Highlight the last column applied
+					circuitGrid.setHighlightColumn(currentStepColumn - 1);
+					if (report != null) console.info(report);
+					view.updateTensorBar("Tensor Product:");
+				};
+			});
 
-			// Reset all styles
-			for (int row = 0; row < gridRows; row++) {
-				for (int col = 0; col < gridColumns; col++) {
-					Button btn = gridButtons[row][col];
-					String gate = btn.getText();
-					String colour = view.getGateColours().get(gate);
-
-					// Restore style based on saved colour or default
-					if (colour != null) {
-						btn.setStyle("-fx-background-color: " + colour + "; -fx-border-color: black; -fx-border-width: 1px;");
-					} else {
-						btn.setStyle("-fx-border-color: black; -fx-border-width: 1px;");
-					}
-				}
-			}
+		// Throws if grid is not initialized.
+		} catch (QCSException e) {
+			console.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Goes back one column, restoring the state from the nearest checkpoint.
+	 */
+	public void stepBackSimulation() {
+		try {
+			if (circuitGrid == null) throw new QCSException("Grid not initialized.");
+
+			if (currentStepColumn == 0) return;
+
+			simulate(() -> {
+				if (engine.getColumn() > 0) engine.seek(engine.getColumn() - 1);
+				int column = engine.getColumn();
 
-			view.updateTensorBar("Tensor Product:");
+				return () -> {
+					currentStepColumn = column;
+					view.updateStepLabel(currentStepColumn);
 
+					// Highlight the last column applied, none once back at the start
+					circuitGrid.setHighlightColumn(currentStepColumn - 1);
+					view.updateTensorBar("Tensor Product:");
+				};
+			});
+
+		// Throws if grid is not initialized.
 		} catch (QCSException e) {
-			textBox.appendText("Error: " + e.getMessage() + "\n");
+			console.error(e.getMessage());
 		}
 	}
 
+	/**
+	 * Resets simulation to first column and removes visual highlights.
+	 */
+	public void resetStepSimulation() {
+		try {
+			if (circuitGrid == null) throw new QCSException("Grid not initialized.");
+
+			simulate(() -> {
+				engine.reset();
+				return () -> {
+					currentStepColumn = 0;
+					view.updateStepLabel(currentStepColumn); // reset label
+					circuitGrid.setHighlightColumn(-1);
+					view.updateTensorBar("Tensor Product:");
+				};
+			});
+
+		} catch (QCSException e) {
+			console.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * telling the engine a cell of the given column changed, so later checkpoints are dropped.
+	 * Queued on the simulation thread so it can't race a running job.
+	 * @param col
+	 */
+	public void invalidateFrom(int col) {
+		if (engine != null) simulator.execute(() -> engine.invalidate(col));
+	}
+
 	/**
 	 * determining if there are remaining multiqubit gates to be placed
 	 * @return
@@ -0,0 +1,754 @@
+package qcs;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Engine class for stepping the model's gate grid through a state vector, one column at a time
+ */
+
+public class QCSEngine {
+
+	/**
+	 * Interface for following a step or run as its gates are applied, called from the simulating thread
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+		void progress(int done, int total);
+	}
+
+	private QCSModel model;
+	private QCSBackend state;
+	private QCSBackend.Type stateType;
+	private QCSBackend.Type backendType = QCSBackend.Type.AUTO;
+	private double sparseThreshold = 1.0 / 32;
+	private int maxBond = Integer.getInteger("qcs.maxBond", QCSMatrixProductState.DEFAULT_MAX_BOND);
+	private String switchNote;
+	private final QCSGateFusion fusion = new QCSGateFusion();
+	private String fusionNote;
+	// sampler of the current state, dropped whenever the state changes
+	private QCSShotSampler sampler;
+	private SplittableRandom seeds = new SplittableRandom();
+	private boolean hugePages = Boolean.getBoolean("qcs.hugePages");
+	private Path spillDirectory = Path.of(System.getProperty("qcs.spillDir", System.getProperty("java.io.tmpdir")));
+	private int column = 0;
+	private final TreeMap<Integer, Checkpoint> checkpoints = new TreeMap<>();
+	private long checkpointBudget = Long.getLong("qcs.checkpointMB", Runtime.getRuntime().maxMemory() >> 22) << 20;
+	private long checkpointBytes = 0;
+	private long checkpointClock = 0;
+	// first edited column that the current state has already gone through
+	private int staleFrom = Integer.MAX_VALUE;
+	private int threads = 1;
+	private volatile boolean cancelled = false;
+	private ProgressListener progress;
+	// gates of the running step or run and how many are through, a seek or replay inside it adds to them
+	private boolean jobRunning = false;
+	private int jobGates = 0;
+	private int jobDone = 0;
+	private ForkJoinPool pool;
+	private QCSStateVector.Kernel kernel = QCSStateVector.Kernel.defaultKernel();
+
+	/**
+	 * constructor
+	 * @param model
+	 */
+	public QCSEngine(QCSModel model) {
+		this.model = model;
+		setThreads(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * setting the grid the next step or run reads, edits still have to be passed to invalidate
+	 * @param model
+	 */
+	public void setModel(QCSModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * number of worker threads used for each gate, 1 runs on the calling thread
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new QCSController.QCSException("Thread count must be a positive integer.");
+		}
+		if (pool != null) pool.shutdown();
+		this.threads = threads;
+		this.pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+		if (state != null) state.setPool(pool);
+	}
+
+	/**
+	 * number of worker threads
+	 * @return
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * switching between the scalar and SIMD gate kernels
+	 * @param kernel
+	 */
+	public void setKernel(QCSStateVector.Kernel kernel) {
+		if (kernel == QCSStateVector.Kernel.VECTOR && !QCSStateVector.Kernel.VECTOR_AVAILABLE) {
+			throw new QCSController.QCSException("Vector kernels need --add-modules jdk.incubator.vector");
+		}
+		if (state != null) state.setKernel(kernel);
+		this.kernel = kernel;
+	}
+
+	/**
+	 * kernel used for new states
+	 * @return
+	 */
+	public QCSStateVector.Kernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * current state, null until the first step
+	 * @return
+	 */
+	public QCSBackend getState() {
+		return state;
+	}
+
+	/**
+	 * choosing how the state is stored, takes effect from the next step after a reset
+	 * @param backendType
+	 */
+	public void setBackendType(QCSBackend.Type backendType) {
+		release();
+		this.backendType = backendType;
+	}
+
+	/**
+	 * backend chosen by the user, AUTO by default
+	 * @return
+	 */
+	public QCSBackend.Type getBackendType() {
+		return backendType;
+	}
+
+	/**
+	 * backend holding the state now, AUTO resolved
+	 * @return null before the first step
+	 */
+	public QCSBackend.Type getStateType() {
+		return stateType;
+	}
+
+	/**
+	 * asking for huge pages when the state is off-heap
+	 * @param hugePages
+	 */
+	public void setHugePages(boolean hugePages) {
+		this.hugePages = hugePages;
+	}
+
+	/**
+	 * directory for the file of the MAPPED backend, ideally on a local SSD
+	 * @param spillDirectory
+	 */
+	public void setSpillDirectory(Path spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * memory the checkpoints may take together, the least recently used are dropped beyond it
+	 * @param checkpointBudget in bytes
+	 */
+	public void setCheckpointBudget(long checkpointBudget) {
+		this.checkpointBudget = checkpointBudget;
+		while (checkpointBytes > checkpointBudget) {
+			evictCheckpoint();
+		}
+	}
+
+	/**
+	 * fill ratio above which a sparse state is moved to a dense backend
+	 * @param sparseThreshold
+	 */
+	public void setSparseThreshold(double sparseThreshold) {
+		this.sparseThreshold = sparseThreshold;
+	}
+
+	/**
+	 * largest bond dimension kept by the MPS backend, lower is faster but less exact
+	 * @param maxBond
+	 */
+	public void setMaxBond(int maxBond) {
+		if (maxBond < 1) {
+			throw new QCSController.QCSException("Bond dimension must be a positive integer.");
+		}
+		release();
+		this.maxBond = maxBond;
+	}
+
+	/**
+	 * backend used for a circuit of the given size. AUTO uses the stabilizer tableau when
+	 * the grid only holds Clifford gates, and the sparse state when the gates that create
+	 * superposition (H, U, CU) can't fill more than the sparse threshold of 2^n states.
+	 * Circuits too wide for any state vector go to the MPS backend, otherwise see denseBackendType.
+	 * @param qubits
+	 * @return
+	 */
+	public QCSBackend.Type resolveBackendType(int qubits) {
+		if (backendType != QCSBackend.Type.AUTO) return backendType;
+
+		// one pass counting each opcode, then the gates are looked at once per kind
+		int[] counts = new int[QCSGate.maxOpcode() + 1];
+		for (byte opcode : model.getCells()) {
+			counts[opcode]++;
+		}
+		boolean clifford = true;
+		int superpositions = 0;
+		for (int opcode = 1; opcode < counts.length; opcode++) {
+			if (counts[opcode] == 0) continue;
+			QCSGate gate = QCSGate.fromOpcode((byte) opcode);
+			if (!QCSStabilizerTableau.supports(gate)) clifford = false;
+			if (gate.createsSuperposition()) superpositions += counts[opcode];
+		}
+		if (clifford) return QCSBackend.Type.STABILIZER;
+		if (qubits <= QCSSparseStateVector.MAX_QUBITS && Math.scalb(1.0, superpositions - qubits) <= sparseThreshold) {
+			return QCSBackend.Type.SPARSE;
+		}
+		if (qubits > QCSMappedStateVector.MAX_QUBITS) return QCSBackend.Type.MPS;
+		return denseBackendType(qubits);
+	}
+
+	/**
+	 * dense state vector for a circuit of the given size: on the heap while the state takes
+	 * at most a quarter of the max heap, off-heap while it fits in free physical memory,
+	 * and spilled to a mapped file above that.
+	 * @param qubits
+	 * @return
+	 */
+	public QCSBackend.Type denseBackendType(int qubits) {
+		long bytes = 16L << qubits;
+		if (qubits <= QCSStateVector.MAX_QUBITS && bytes <= Runtime.getRuntime().maxMemory() / 4) {
+			return QCSBackend.Type.HEAP;
+		}
+		if (qubits <= QCSOffHeapStateVector.MAX_QUBITS && bytes <= freePhysicalMemory()) {
+			return QCSBackend.Type.OFF_HEAP;
+		}
+		return QCSBackend.Type.MAPPED;
+	}
+
+	/**
+	 * free RAM as reported by the OS
+	 * @return
+	 */
+	private static long freePhysicalMemory() {
+		if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+			return os.getFreeMemorySize();
+		}
+		return Runtime.getRuntime().maxMemory();
+	}
+
+	/**
+	 * creating a backend in the |0...0> state
+	 * @param qubits
+	 * @param type
+	 * @return
+	 */
+	private QCSBackend createBackend(int qubits, QCSBackend.Type type) {
+		QCSBackend backend = switch (type) {
+		case STABILIZER -> new QCSStabilizerTableau(qubits);
+		case SPARSE -> new QCSSparseStateVector(qubits);
+		case MPS -> new QCSMatrixProductState(qubits, maxBond);
+		case OFF_HEAP -> new QCSOffHeapStateVector(qubits, hugePages);
+		case MAPPED -> new QCSMappedStateVector(qubits, spillDirectory, QCSMappedStateVector.DEFAULT_BLOCK_BYTES);
+		default -> new QCSStateVector(qubits);
+		};
+		backend.setPool(pool);
+		backend.setKernel(kernel);
+		return backend;
+	}
+
+	/**
+	 * index of the next column to be applied
+	 * @return
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * applying the next column of the grid to the state
+	 * @return the gates that were applied
+	 */
+	public List<QCSOperation> step() {
+		boolean outer = beginJob(column, column + 1);
+		try {
+			return stepColumn();
+		} finally {
+			if (outer) jobRunning = false;
+		}
+	}
+
+	private List<QCSOperation> stepColumn() {
+		int rows = model.getRows();
+		if (column >= model.getColumns()) {
+			throw new QCSController.QCSException("No more columns to simulate.");
+		}
+		if (staleFrom < column) seek(column);
+		sampler = null;
+		List<QCSOperation> ops = decodeColumn(column);
+
+		// only the column being applied is checked against the stabilizer backend, a T or U
+		// added since it was picked switches to a state vector and replays the stepped columns
+		boolean fits = state != null && state.getQubits() == rows;
+		if (fits && stateType == QCSBackend.Type.STABILIZER) {
+			for (QCSOperation op : ops) {
+				if (!QCSStabilizerTableau.supports(op.gate)) fits = false;
+			}
+		}
+		QCSBackend.Type type = fits ? stateType : resolveBackendType(rows);
+		if (state == null || state.getQubits() != rows || type != stateType) {
+			int replay = (state != null && state.getQubits() == rows) ? column : 0;
+			release();
+			state = createBackend(rows, type);
+			stateType = type;
+			List<QCSOperation> replayed = new ArrayList<>();
+			for (int col = 0; col < replay; col++) {
+				replayed.addAll(decodeColumn(col));
+			}
+			jobGates += replayed.size();
+			applyFused(replayed);
+			if (replay != column) ops = decodeColumn(replay);
+			column = replay;
+		}
+
+		// a column stepped before and not edited since comes straight from its checkpoint
+		Checkpoint saved = checkpoints.get(column + 1);
+		if (saved != null) {
+			restore(saved);
+			column++;
+			jobDone += ops.size();
+			reportProgress();
+			return ops;
+		}
+
+		applyAll(ops, ops.size());
+		column++;
+
+		if (state instanceof QCSSparseStateVector sparse && sparse.fillRatio() > sparseThreshold) {
+			densify(sparse);
+		}
+		saveCheckpoint();
+		return ops;
+	}
+
+	/**
+	 * moving to the state after the given number of columns, from the nearest checkpoint
+	 * at or before it, or from the current state when that is closer
+	 * @param target
+	 */
+	public void seek(int target) {
+		if (target < 0 || target > model.getColumns()) {
+			throw new QCSController.QCSException("Column " + target + " is outside the circuit.");
+		}
+		Map.Entry<Integer, Checkpoint> entry = checkpoints.floorEntry(target);
+		boolean current = state != null && column <= target && staleFrom >= column;
+		if (!current || (entry != null && entry.getKey() > column)) {
+			if (entry != null) {
+				restore(entry.getValue());
+				column = entry.getKey();
+			} else {
+				if (state != null) state.reset();
+				column = 0;
+			}
+		}
+		staleFrom = Integer.MAX_VALUE;
+		runTo(target);
+	}
+
+	/**
+	 * applying every column up to the given one in a single batch. The first column is stepped
+	 * on its own so the backend gets chosen, the rest go through gate fusion together and only
+	 * the state at the end is checkpointed.
+	 * @param target
+	 */
+	public void runTo(int target) {
+		if (target > model.getColumns()) {
+			throw new QCSController.QCSException("Column " + target + " is outside the circuit.");
+		}
+		if (column >= target) return;
+		boolean outer = beginJob(column, target);
+		try {
+			stepColumn();
+			if (column >= target) return;
+
+			// the tableau has no fused gates and has to see each column for the switch to a state vector
+			if (stateType == QCSBackend.Type.STABILIZER) {
+				while (column < target) {
+					stepColumn();
+				}
+				return;
+			}
+
+			List<QCSOperation> ops = new ArrayList<>();
+			for (int col = column; col < target; col++) {
+				ops.addAll(decodeColumn(col));
+			}
+			applyFused(ops);
+			sampler = null;
+			column = target;
+
+			if (state instanceof QCSSparseStateVector sparse && sparse.fillRatio() > sparseThreshold) {
+				densify(sparse);
+			}
+			saveCheckpoint();
+		} finally {
+			if (outer) jobRunning = false;
+		}
+	}
+
+	/**
+	 * counting the gates of the columns a step or run is about to apply, so the progress covers all
+	 * of it rather than each batch. Inside a running job they are added to its count.
+	 * @param from
+	 * @param to
+	 * @return whether this started a job
+	 */
+	private boolean beginJob(int from, int to) {
+		int gates = 0;
+		for (int col = from; col < Math.min(to, model.getColumns()); col++) {
+			gates += decodeColumn(col).size();
+		}
+		if (jobRunning) {
+			jobGates += gates;
+			return false;
+		}
+		jobRunning = true;
+		jobGates = gates;
+		jobDone = 0;
+		return true;
+	}
+
+	private void reportProgress() {
+		if (progress != null && jobGates > 0) progress.progress(Math.min(jobDone, jobGates), jobGates);
+	}
+
+	/**
+	 * applying gates through the fusion pass, 4x4 fusion only where the backend applies FUSED2
+	 * @param ops
+	 */
+	private void applyFused(List<QCSOperation> ops) {
+		if (stateType == QCSBackend.Type.STABILIZER) {
+			applyAll(ops, ops.size());
+			return;
+		}
+		boolean pairs = stateType == QCSBackend.Type.HEAP || stateType == QCSBackend.Type.OFF_HEAP
+				|| stateType == QCSBackend.Type.MPS;
+		List<QCSOperation> compiled = fusion.fuse(ops, state.getQubits(), pairs);
+		applyAll(compiled, ops.size());
+		if (fusion.getFusedCount() > 0) {
+			fusionNote = String.format("Gate fusion: %d gates applied as %d", ops.size(), compiled.size());
+		}
+	}
+
+	/**
+	 * applying gates one by one, reporting progress and stopping between two gates on a cancel.
+	 * A cancelled state is part way through a column, so it is rebuilt from a checkpoint on next use.
+	 * @param ops
+	 * @param gates gates of the grid the ops stand for, more than ops.size() after fusion
+	 */
+	private void applyAll(List<QCSOperation> ops, int gates) {
+		int before = jobDone;
+		for (int i = 0; i < ops.size(); i++) {
+			if (cancelled) {
+				staleFrom = -1;
+				sampler = null;
+				throw new QCSController.QCSException("Simulation cancelled.");
+			}
+			state.apply(ops.get(i));
+			jobDone = before + (int) ((long) (i + 1) * gates / ops.size());
+			reportProgress();
+		}
+	}
+
+	/**
+	 * asking the running step, run or seek to stop before its next gate, and sampling or a top K
+	 * search to stop at their next check. Can be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * whether the running job was asked to stop
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * stopping a sampling or search loop once its job is cancelled
+	 * @param cancelled
+	 */
+	static void checkCancelled(BooleanSupplier cancelled) {
+		if (cancelled.getAsBoolean()) {
+			throw new QCSController.QCSException("Simulation cancelled.");
+		}
+	}
+
+	/**
+	 * clearing a cancel, done before each new job
+	 */
+	public void clearCancel() {
+		cancelled = false;
+	}
+
+	/**
+	 * setting who gets told about the gates applied so far, null for nobody
+	 * @param progress
+	 */
+	public void setProgressListener(ProgressListener progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * dropping what an edit of the given column makes out of date. Checkpoints after the column
+	 * go away, and a state that already went through it is rebuilt on the next step.
+	 * @param col
+	 */
+	public void invalidate(int col) {
+		while (!checkpoints.isEmpty() && checkpoints.lastKey() > col) {
+			Checkpoint removed = checkpoints.pollLastEntry().getValue();
+			checkpointBytes -= removed.bytes;
+			removed.state.close();
+		}
+		if (col < column) {
+			staleFrom = Math.min(staleFrom, col);
+			sampler = null;
+		}
+	}
+
+	/**
+	 * pool shared by the gate updates and the sampling, null when running on one thread
+	 * @return
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * fixing the seed of the shots that follow, for repeatable counts
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * measuring the state after the current column. The sampler is built on the first
+	 * call and reused until the state changes.
+	 * @param shots
+	 * @return
+	 */
+	public QCSShotSampler.Counts sample(long shots) {
+		if (state == null) {
+			throw new QCSController.QCSException("Run the circuit before measuring.");
+		}
+		if (staleFrom < column) seek(column);
+		if (sampler == null) sampler = new QCSShotSampler(state, pool, this::isCancelled);
+		return sampler.sample(shots, seeds.nextLong(), pool);
+	}
+
+	/**
+	 * the k most likely outcomes of the state after the current column
+	 * @param k
+	 * @return
+	 */
+	public QCSTopK topOutcomes(int k) {
+		if (state == null) {
+			throw new QCSController.QCSException("Run the circuit before measuring.");
+		}
+		if (staleFrom < column) seek(column);
+		return QCSTopK.ofState(state, k, pool, this::isCancelled);
+	}
+
+	/**
+	 * keeping a copy of the state after the current column, when it fits the budget
+	 */
+	private void saveCheckpoint() {
+		long bytes = state.sizeBytes();
+		if (bytes > checkpointBudget) return;
+		QCSBackend copy = state.copy();
+		if (copy == null) return;
+		while (checkpointBytes + bytes > checkpointBudget) {
+			evictCheckpoint();
+		}
+		checkpoints.put(column, new Checkpoint(copy, stateType, bytes, ++checkpointClock));
+		checkpointBytes += bytes;
+	}
+
+	/**
+	 * continuing from a copy of a checkpoint, the checkpoint itself stays untouched
+	 * @param saved
+	 */
+	private void restore(Checkpoint saved) {
+		if (state != null) state.close();
+		state = saved.state.copy();
+		state.setPool(pool);
+		state.setKernel(kernel);
+		stateType = saved.type;
+		sampler = null;
+		saved.lastUsed = ++checkpointClock;
+	}
+
+	private void evictCheckpoint() {
+		Map.Entry<Integer, Checkpoint> oldest = null;
+		for (Map.Entry<Integer, Checkpoint> entry : checkpoints.entrySet()) {
+			if (oldest == null || entry.getValue().lastUsed < oldest.getValue().lastUsed) oldest = entry;
+		}
+		if (oldest == null) return;
+		checkpoints.remove(oldest.getKey());
+		checkpointBytes -= oldest.getValue().bytes;
+		oldest.getValue().state.close();
+	}
+
+	private void clearCheckpoints() {
+		for (Checkpoint saved : checkpoints.values()) {
+			saved.state.close();
+		}
+		checkpoints.clear();
+		checkpointBytes = 0;
+	}
+
+	/**
+	 * moving a sparse state that got too full into a dense backend
+	 * @param sparse
+	 */
+	private void densify(QCSSparseStateVector sparse) {
+		QCSBackend.Type type = denseBackendType(sparse.getQubits());
+		QCSBackend dense = createBackend(sparse.getQubits(), type);
+		sparse.copyTo(dense);
+		switchNote = String.format("Switched from sparse to %s state vector at %.1f%% fill", type, sparse.fillRatio() * 100);
+		sparse.close();
+		state = dense;
+		stateType = type;
+	}
+
+	/**
+	 * what the backend reports about the last step, such as disk traffic
+	 * @return null when there is nothing to report
+	 */
+	public String stepReport() {
+		String report = (state == null) ? null : state.stepReport();
+		for (String note : new String[] {fusionNote, switchNote}) {
+			if (note != null) report = (report == null) ? note : note + "\n" + report;
+		}
+		fusionNote = null;
+		switchNote = null;
+		return report;
+	}
+
+	/**
+	 * going back to the |0...0> state before the first column
+	 */
+	public void reset() {
+		if (state != null) state.reset();
+		sampler = null;
+		column = 0;
+		staleFrom = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * dropping the state and its checkpoints, off-heap memory is freed right away
+	 */
+	public void release() {
+		if (state != null) state.close();
+		state = null;
+		sampler = null;
+		column = 0;
+		staleFrom = Integer.MAX_VALUE;
+		clearCheckpoints();
+	}
+
+	/**
+	 * freeing the state and shutting the worker pool down, the engine runs on one thread afterwards
+	 */
+	public void close() {
+		release();
+		if (pool != null) pool.shutdown();
+		pool = null;
+		threads = 1;
+	}
+
+	/**
+	 * turning one grid column into gates. Cells of a multi-qubit gate are grouped
+	 * top to bottom in the size of the gate, the last cell of a group being the target.
+	 * @param col
+	 * @return
+	 */
+	public List<QCSOperation> decodeColumn(int col) {
+		List<QCSOperation> ops = new ArrayList<>();
+		Map<QCSGate, List<Integer>> pending = new EnumMap<>(QCSGate.class);
+		double[] phase = model.getPhaseParams();
+
+		for (int row = 0; row < model.getRows(); row++) {
+			QCSGate gate = model.gate(row, col);
+			if (gate == null || gate == QCSGate.BARRIER) continue;
+
+			if (gate.getQubits() == 1) {
+				ops.add(new QCSOperation(gate, row, new int[0], gate.matrix(phase[0], phase[1], phase[2])));
+				continue;
+			}
+
+			List<Integer> rows = pending.computeIfAbsent(gate, g -> new ArrayList<>());
+			rows.add(row);
+			if (rows.size() == gate.getQubits()) {
+				int[] controls = new int[rows.size() - 1];
+				for (int i = 0; i < controls.length; i++) {
+					controls[i] = rows.get(i);
+				}
+				ops.add(new QCSOperation(gate, row, controls, gate.matrix(phase[0], phase[1], phase[2])));
+				rows.clear();
+			}
+		}
+
+		for (Map.Entry<QCSGate, List<Integer>> entry : pending.entrySet()) {
+			if (!entry.getValue().isEmpty()) {
+				throw new QCSController.QCSException("Incomplete " + entry.getKey() + " gate in column " + col);
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Inner class for a saved copy of the state, keyed in the map by the number of columns applied
+	 */
+	private static final class Checkpoint {
+
+		final QCSBackend state;
+		final QCSBackend.Type type;
+		final long bytes;
+		long lastUsed;
+
+		Checkpoint(QCSBackend state, QCSBackend.Type type, long bytes, long lastUsed) {
+			this.state = state;
+			this.type = type;
+			this.bytes = bytes;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package qcs;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Enum for the gates in the palette and the 2x2 matrix they apply to their target qubit,
+ * with the Qiskit name and default colour of each. The model stores a gate as its one byte opcode.
+ */
+
+public enum QCSGate {
+
+	// the opcode is the position in this list plus one, and .qcb files store it, so new gates go at the end of the palette
+	I(1, "id", "#ffadad"), X(1, "x", "#ffd6a5"), Y(1, "y", "#fdffb6"), Z(1, "z", "#caffbf"),
+	H(1, "h", "#9bf6ff"), S(1, "s", "#a0c4ff"), T(1, "t", "#bdb2ff"), U(1, "u", "#ffc6ff"),
+	CX(2, "cx", "#d0f4de"), SWAP(2, "swap", "#fef9c7"), CU(2, "cu", "#fcd5ce"), CCX(3, "ccx", "#cdb4db"),
+	BARRIER(0, "barrier", "#cacccb"),
+	// made by QCSGateFusion out of several gates, the matrix travels with the operation
+	FUSED(1, null, null), FUSED2(2, null, null);
+
+	// 0 is an empty cell
+	public static final byte EMPTY = 0;
+	// gates that can be placed on the grid, indexed by opcode - 1
+	private static final QCSGate[] PALETTE = {I, X, Y, Z, H, S, T, U, CX, SWAP, CU, CCX, BARRIER};
+
+	// matrices are stored as {m00re, m00im, m01re, m01im, m10re, m10im, m11re, m11im}
+	private static final double R = 1.0 / Math.sqrt(2.0);
+	private static final double[] ID = {1, 0, 0, 0, 0, 0, 1, 0};
+	private static final double[] PAULI_X = {0, 0, 1, 0, 1, 0, 0, 0};
+	private static final double[] PAULI_Y = {0, 0, 0, -1, 0, 1, 0, 0};
+	private static final double[] PAULI_Z = {1, 0, 0, 0, 0, 0, -1, 0};
+	private static final double[] HADAMARD = {R, 0, R, 0, R, 0, -R, 0};
+	private static final double[] PHASE_S = {1, 0, 0, 0, 0, 0, 0, 1};
+	private static final double[] PHASE_T = {1, 0, 0, 0, 0, 0, R, R};
+
+	private final int qubits;
+	private final String qiskitName;
+	private final String colour;
+
+	/**
+	 * Enum for how a gate acts on the amplitudes, each kind has its own kernel. DIAGONAL gates
+	 * only multiply amplitudes by a phase and PERMUTATION gates only move them around.
+	 */
+	public enum Kind {
+		IDENTITY, DIAGONAL, PERMUTATION, GENERAL
+	}
+
+	/**
+	 * constructor
+	 * @param qubits
+	 * @param qiskitName name after "qc." in Qiskit code
+	 * @param colour default colour of the gate on the grid
+	 */
+	QCSGate(int qubits, String qiskitName, String colour) {
+		this.qubits = qubits;
+		this.qiskitName = qiskitName;
+		this.colour = colour;
+	}
+
+	/**
+	 * byte stored in the model for the gate
+	 * @return
+	 */
+	public byte opcode() {
+		if (ordinal() >= PALETTE.length) throw new QCSController.QCSException(this + " gates can't be placed on the grid");
+		return (byte) (ordinal() + 1);
+	}
+
+	/**
+	 * gate for a stored byte
+	 * @param opcode
+	 * @return null for an empty cell
+	 */
+	public static QCSGate fromOpcode(byte opcode) {
+		int code = opcode & 0xff;
+		if (code == EMPTY) return null;
+		if (code > PALETTE.length) throw new QCSController.QCSException("Unsupported gate opcode: " + code);
+		return PALETTE[code - 1];
+	}
+
+	/**
+	 * highest opcode in use
+	 * @return
+	 */
+	public static int maxOpcode() {
+		return PALETTE.length;
+	}
+
+	public String getQiskitName() {
+		return qiskitName;
+	}
+
+	public String getColour() {
+		return colour;
+	}
+
+	/**
+	 * number of grid cells (qubits) one instance of the gate occupies in a column
+	 * @return
+	 */
+	public int getQubits() {
+		return qubits;
+	}
+
+	/**
+	 * whether the gate can spread one basis state over several, the others only permute or phase them
+	 * @return
+	 */
+	public boolean createsSuperposition() {
+		return this == H || this == U || this == CU || this == FUSED || this == FUSED2;
+	}
+
+	/**
+	 * kind of the gate with its usual matrix. U, CU and fused gates are GENERAL here,
+	 * QCSOperation classifies them again from the actual matrix.
+	 * @return
+	 */
+	public Kind kind() {
+		return switch (this) {
+		case I, BARRIER -> Kind.IDENTITY;
+		case Z, S, T -> Kind.DIAGONAL;
+		case X, CX, CCX, SWAP -> Kind.PERMUTATION;
+		default -> Kind.GENERAL;
+		};
+	}
+
+	/**
+	 * kind of a 2x2 matrix, the permutation kind being a plain X
+	 * @param m
+	 * @return
+	 */
+	public static Kind classify(double[] m) {
+		boolean diagonal = m[2] == 0 && m[3] == 0 && m[4] == 0 && m[5] == 0;
+		if (diagonal) {
+			boolean identity = m[0] == 1 && m[1] == 0 && m[6] == 1 && m[7] == 0;
+			return identity ? Kind.IDENTITY : Kind.DIAGONAL;
+		}
+		boolean flip = m[0] == 0 && m[1] == 0 && m[6] == 0 && m[7] == 0
+				&& m[2] == 1 && m[3] == 0 && m[4] == 1 && m[5] == 0;
+		return flip ? Kind.PERMUTATION : Kind.GENERAL;
+	}
+
+	/**
+	 * matrix applied to the target qubit, using the phase parameters for U and CU
+	 * @param a theta
+	 * @param b phi
+	 * @param c lambda
+	 * @return
+	 */
+	public double[] matrix(double a, double b, double c) {
+		return switch (this) {
+		case I, BARRIER -> ID;
+		case X, CX, CCX -> PAULI_X;
+		case Y -> PAULI_Y;
+		case Z -> PAULI_Z;
+		case H -> HADAMARD;
+		case S -> PHASE_S;
+		case T -> PHASE_T;
+		case U, CU -> unitary(a, b, c);
+		case SWAP, FUSED, FUSED2 -> null;
+		};
+	}
+
+	/**
+	 * general single qubit rotation U(theta, phi, lambda)
+	 * @param theta
+	 * @param phi
+	 * @param lambda
+	 * @return
+	 */
+	private static double[] unitary(double theta, double phi, double lambda) {
+		double cos = Math.cos(theta / 2);
+		double sin = Math.sin(theta / 2);
+		return new double[] {
+			cos, 0,
+			-Math.cos(lambda) * sin, -Math.sin(lambda) * sin,
+			Math.cos(phi) * sin, Math.sin(phi) * sin,
+			Math.cos(phi + lambda) * cos, Math.sin(phi + lambda) * cos
+		};
+	}
+
+	/**
+	 * looking up a gate by the text shown on the grid, null for an empty cell
+	 * @param name
+	 * @return
+	 */
+	public static QCSGate fromName(String name) {
+		if (name == null || name.isBlank()) return null;
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new QCSController.QCSException("Unrecognized gate: " + name);
+		}
+	}
+}
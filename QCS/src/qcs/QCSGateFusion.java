@@ -0,0 +1,306 @@
+package qcs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Compile pass run on the decoded gates before they reach a backend. Runs of single qubit
+ * gates on the same row are multiplied into one 2x2 matrix, and optionally the gates acting
+ * only on one pair of qubits are multiplied into one 4x4 matrix. Every gate is a full pass
+ * over the state, so each gate fused away saves one.
+ */
+
+public class QCSGateFusion {
+
+	// a fused run this close to the identity is dropped altogether
+	private static final double TOLERANCE = 1e-12;
+
+	private int fused = 0;
+
+	/**
+	 * fusing a sequence of gates
+	 * @param ops gates in the order they are applied
+	 * @param qubits
+	 * @param pairs also fuse into 4x4 matrices, for backends that apply FUSED2
+	 * @return
+	 */
+	public List<QCSOperation> fuse(List<QCSOperation> ops, int qubits, boolean pairs) {
+		List<QCSOperation> out = fuseSingles(ops, qubits);
+		if (pairs) out = fusePairs(out, qubits);
+		fused = ops.size() - out.size();
+		return out;
+	}
+
+	/**
+	 * number of gates saved by the last call to fuse
+	 * @return
+	 */
+	public int getFusedCount() {
+		return fused;
+	}
+
+	/**
+	 * collecting single qubit gates per row until a multi-qubit gate touches that row
+	 * @param ops
+	 * @param qubits
+	 * @return
+	 */
+	private static List<QCSOperation> fuseSingles(List<QCSOperation> ops, int qubits) {
+		List<QCSOperation> out = new ArrayList<>();
+		Run[] runs = new Run[qubits];
+
+		for (QCSOperation op : ops) {
+			if (isSingle(op)) {
+				if (runs[op.target] == null) {
+					runs[op.target] = new Run(op);
+				} else {
+					runs[op.target].add(op);
+				}
+				continue;
+			}
+			// gates on other rows commute with this one, so only its own rows are flushed
+			flushRun(runs, op.target, out);
+			for (int c : op.controls) {
+				flushRun(runs, c, out);
+			}
+			out.add(op);
+		}
+		for (int q = 0; q < qubits; q++) {
+			flushRun(runs, q, out);
+		}
+		return out;
+	}
+
+	private static void flushRun(Run[] runs, int q, List<QCSOperation> out) {
+		Run run = runs[q];
+		if (run == null) return;
+		runs[q] = null;
+		if (run.count == 1) {
+			out.add(run.first);
+		} else if (!isIdentity(run.matrix)) {
+			out.add(new QCSOperation(QCSGate.FUSED, q, new int[0], run.matrix));
+		}
+	}
+
+	/**
+	 * collecting gates on one pair of qubits, with the single qubit gates that follow on either of them,
+	 * until a gate links one of the two to another qubit
+	 * @param ops
+	 * @param qubits
+	 * @return
+	 */
+	private static List<QCSOperation> fusePairs(List<QCSOperation> ops, int qubits) {
+		List<QCSOperation> out = new ArrayList<>();
+		Block[] open = new Block[qubits];
+
+		for (QCSOperation op : ops) {
+			if (isSingle(op)) {
+				Block block = open[op.target];
+				if (block != null) {
+					block.add(embed(op.matrix, op.target == block.a));
+				} else {
+					out.add(op);
+				}
+				continue;
+			}
+			if (op.controls.length == 1) {
+				int a = op.controls[0];
+				int b = op.target;
+				Block block = open[a];
+				if (block != null && block == open[b]) {
+					block.add(pairMatrix(op, block.a, block.b));
+				} else {
+					closeBlock(open, a, out);
+					closeBlock(open, b, out);
+					open[a] = new Block(op, a, b);
+					open[b] = open[a];
+				}
+				continue;
+			}
+			closeBlock(open, op.target, out);
+			for (int c : op.controls) {
+				closeBlock(open, c, out);
+			}
+			out.add(op);
+		}
+		for (int q = 0; q < qubits; q++) {
+			closeBlock(open, q, out);
+		}
+		return out;
+	}
+
+	private static void closeBlock(Block[] open, int q, List<QCSOperation> out) {
+		Block block = open[q];
+		if (block == null) return;
+		open[block.a] = null;
+		open[block.b] = null;
+		if (block.count == 1) {
+			out.add(block.first);
+		} else {
+			out.add(new QCSOperation(QCSGate.FUSED2, block.b, new int[] {block.a}, block.matrix));
+		}
+	}
+
+	private static boolean isSingle(QCSOperation op) {
+		return op.controls.length == 0 && op.matrix != null;
+	}
+
+	private static boolean isIdentity(double[] m) {
+		return Math.abs(m[0] - 1) < TOLERANCE && Math.abs(m[1]) < TOLERANCE
+				&& Math.abs(m[2]) < TOLERANCE && Math.abs(m[3]) < TOLERANCE
+				&& Math.abs(m[4]) < TOLERANCE && Math.abs(m[5]) < TOLERANCE
+				&& Math.abs(m[6] - 1) < TOLERANCE && Math.abs(m[7]) < TOLERANCE;
+	}
+
+	/**
+	 * 4x4 matrix of a two qubit gate with the basis ordered (bit of a, bit of b)
+	 * @param op
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	static double[] pairMatrix(QCSOperation op, int a, int b) {
+		if (op.gate == QCSGate.SWAP) return swapMatrix();
+		double[] g = (op.gate == QCSGate.FUSED2) ? op.matrix : controlled(op.matrix);
+		return (op.controls[0] == a) ? g : exchangeQubits(g);
+	}
+
+	/**
+	 * 4x4 controlled gate, control on the first qubit
+	 * @param m
+	 * @return
+	 */
+	static double[] controlled(double[] m) {
+		double[] g = new double[32];
+		g[0] = 1;
+		g[(1 * 4 + 1) * 2] = 1;
+		for (int i = 0; i < 2; i++) {
+			for (int j = 0; j < 2; j++) {
+				g[((2 + i) * 4 + 2 + j) * 2] = m[(i * 2 + j) * 2];
+				g[((2 + i) * 4 + 2 + j) * 2 + 1] = m[(i * 2 + j) * 2 + 1];
+			}
+		}
+		return g;
+	}
+
+	static double[] swapMatrix() {
+		double[] g = new double[32];
+		g[0] = 1;
+		g[(1 * 4 + 2) * 2] = 1;
+		g[(2 * 4 + 1) * 2] = 1;
+		g[(3 * 4 + 3) * 2] = 1;
+		return g;
+	}
+
+	/**
+	 * same gate with the basis ordered (bit of b, bit of a)
+	 * @param g
+	 * @return
+	 */
+	static double[] exchangeQubits(double[] g) {
+		int[] swap = {0, 2, 1, 3};
+		double[] out = new double[32];
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				out[(swap[i] * 4 + swap[j]) * 2] = g[(i * 4 + j) * 2];
+				out[(swap[i] * 4 + swap[j]) * 2 + 1] = g[(i * 4 + j) * 2 + 1];
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * a 2x2 gate as a 4x4 one, m (x) I on the first qubit or I (x) m on the second
+	 * @param m
+	 * @param first
+	 * @return
+	 */
+	private static double[] embed(double[] m, boolean first) {
+		double[] g = new double[32];
+		for (int s = 0; s < 2; s++) {
+			for (int t = 0; t < 2; t++) {
+				for (int k = 0; k < 2; k++) {
+					int row = first ? s * 2 + k : k * 2 + s;
+					int col = first ? t * 2 + k : k * 2 + t;
+					g[(row * 4 + col) * 2] = m[(s * 2 + t) * 2];
+					g[(row * 4 + col) * 2 + 1] = m[(s * 2 + t) * 2 + 1];
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * complex product of two n x n matrices, a applied after b
+	 * @param a
+	 * @param b
+	 * @param n
+	 * @return
+	 */
+	private static double[] multiply(double[] a, double[] b, int n) {
+		double[] c = new double[n * n * 2];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double re = 0, im = 0;
+				for (int k = 0; k < n; k++) {
+					double ar = a[(i * n + k) * 2], ai = a[(i * n + k) * 2 + 1];
+					double br = b[(k * n + j) * 2], bi = b[(k * n + j) * 2 + 1];
+					re += ar * br - ai * bi;
+					im += ar * bi + ai * br;
+				}
+				c[(i * n + j) * 2] = re;
+				c[(i * n + j) * 2 + 1] = im;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Inner class for a run of single qubit gates on one row
+	 */
+	private static final class Run {
+
+		final QCSOperation first;
+		double[] matrix;
+		int count = 1;
+
+		Run(QCSOperation first) {
+			this.first = first;
+			this.matrix = first.matrix;
+		}
+
+		void add(QCSOperation op) {
+			matrix = multiply(op.matrix, matrix, 2);
+			count++;
+		}
+	}
+
+	/**
+	 * Inner class for the gates collected on one pair of qubits, basis ordered (bit of a, bit of b)
+	 */
+	private static final class Block {
+
+		final QCSOperation first;
+		final int a;
+		final int b;
+		double[] matrix;
+		int count = 1;
+
+		Block(QCSOperation first, int a, int b) {
+			this.first = first;
+			this.a = a;
+			this.b = b;
+			this.matrix = pairMatrix(first, a, b);
+		}
+
+		void add(double[] g) {
+			matrix = multiply(g, matrix, 4);
+			count++;
+		}
+	}
+}
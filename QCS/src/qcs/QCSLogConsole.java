@@ -0,0 +1,164 @@
+package qcs;
+
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Message console over the text area at the bottom of the window. It keeps at most a fixed
+ * number of entries, dropping the oldest, and entries logged between two frames reach the
+ * text area in one append. Entries can be logged from any thread.
+ */
+
+public class QCSLogConsole {
+
+	/**
+	 * Enum for how important an entry is, entries below the console's level are dropped
+	 */
+	public enum Level {
+		INFO(""), WARNING("Warning: "), ERROR("Error: ");
+
+		private final String prefix;
+
+		Level(String prefix) {
+			this.prefix = prefix;
+		}
+	}
+
+	private final TextArea area;
+	private final int capacity;
+
+	// entries waiting for the next frame, oldest first, overwritten when more than capacity arrive
+	private final String[] pending;
+	private int pendingHead = 0;
+	private int pendingCount = 0;
+	private boolean overflowed = false;
+	private boolean clearQueued = false;
+	private boolean flushQueued = false;
+	private Level level = Level.INFO;
+
+	// characters of each entry in the text area, only touched on the FX thread
+	private final int[] shown;
+	private int shownHead = 0;
+	private int shownCount = 0;
+
+	/**
+	 * constructor
+	 * @param area
+	 * @param capacity most entries kept
+	 */
+	public QCSLogConsole(TextArea area, int capacity) {
+		this.area = area;
+		this.capacity = capacity;
+		this.pending = new String[capacity];
+		this.shown = new int[capacity];
+	}
+
+	public void info(String message) {
+		log(Level.INFO, message);
+	}
+
+	public void warning(String message) {
+		log(Level.WARNING, message);
+	}
+
+	public void error(String message) {
+		log(Level.ERROR, message);
+	}
+
+	/**
+	 * adding an entry, shown on the next frame
+	 * @param level
+	 * @param message
+	 */
+	public synchronized void log(Level level, String message) {
+		if (level.ordinal() < this.level.ordinal()) return;
+		String entry = level.prefix + message + "\n";
+		if (pendingCount == capacity) {
+			pending[pendingHead] = entry;
+			pendingHead = (pendingHead + 1) % capacity;
+			overflowed = true;
+		} else {
+			pending[(pendingHead + pendingCount) % capacity] = entry;
+			pendingCount++;
+		}
+		queueFlush();
+	}
+
+	/**
+	 * removing every entry
+	 */
+	public synchronized void clear() {
+		pendingHead = 0;
+		pendingCount = 0;
+		overflowed = false;
+		clearQueued = true;
+		queueFlush();
+	}
+
+	/**
+	 * setting the least important level that is still shown
+	 * @param level
+	 */
+	public synchronized void setLevel(Level level) {
+		this.level = level;
+	}
+
+	private void queueFlush() {
+		if (flushQueued) return;
+		flushQueued = true;
+		Platform.runLater(this::flush);
+	}
+
+	/**
+	 * moving the waiting entries into the text area, dropping the oldest shown ones past capacity
+	 */
+	private void flush() {
+		String[] batch;
+		boolean reset;
+		synchronized (this) {
+			batch = new String[pendingCount];
+			for (int i = 0; i < pendingCount; i++) {
+				batch[i] = pending[(pendingHead + i) % capacity];
+				pending[(pendingHead + i) % capacity] = null;
+			}
+			reset = clearQueued || overflowed || pendingCount == capacity;
+			pendingHead = 0;
+			pendingCount = 0;
+			overflowed = false;
+			clearQueued = false;
+			flushQueued = false;
+		}
+
+		StringBuilder text = new StringBuilder();
+		for (String entry : batch) {
+			text.append(entry);
+		}
+
+		if (reset) {
+			// the batch alone fills the console, or it was cleared
+			shownHead = 0;
+			shownCount = 0;
+			area.setText(text.toString());
+		} else {
+			int remove = shownCount + batch.length - capacity;
+			int chars = 0;
+			for (int i = 0; i < remove; i++) {
+				chars += shown[shownHead];
+				shownHead = (shownHead + 1) % capacity;
+				shownCount--;
+			}
+			if (chars > 0) area.deleteText(0, chars);
+			area.appendText(text.toString());
+		}
+
+		for (String entry : batch) {
+			shown[(shownHead + shownCount) % capacity] = entry.length();
+			shownCount++;
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package qcs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * State vector spilled to a memory-mapped file, for circuits whose state is bigger than RAM.
+ * Gates are applied one block of the file at a time, blocks in increasing order, so every pass
+ * streams through the file. When the target bit is above the block size the two halves of each
+ * pair live in two blocks, which are mapped together and still advance sequentially.
+ */
+
+public class QCSMappedStateVector implements QCSBackend {
+
+	public static final int MAX_QUBITS = 40;
+
+	// size of one mapped window
+	public static final long DEFAULT_BLOCK_BYTES = 64L << 20;
+
+	private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+	private static final double[] PAULI_X = QCSGate.X.matrix(0, 0, 0);
+
+	private final int qubits;
+	private final long dimension;
+	private final long blockAmps;
+	private final Path file;
+	private final FileChannel channel;
+	private ForkJoinPool pool;
+	// size of the windows mapped since the last report, what really reaches the disk is up to the page cache
+	private long bytesMapped = 0;
+
+	/**
+	 * constructor, creates a sparse spill file in the directory and starts in the |0...0> state
+	 * @param qubits
+	 * @param directory
+	 * @param blockBytes size of one mapped window, rounded down to a power of two
+	 */
+	public QCSMappedStateVector(int qubits, Path directory, long blockBytes) {
+		if (qubits < 1 || qubits > MAX_QUBITS) {
+			throw new QCSController.QCSException("Mapped state vector supports 1 to " + MAX_QUBITS + " qubits, got " + qubits);
+		}
+		this.qubits = qubits;
+		this.dimension = 1L << qubits;
+		this.blockAmps = Math.min(dimension, Long.highestOneBit(Math.max(blockBytes >> 4, 2)));
+
+		try {
+			this.file = Files.createTempFile(directory, "qcs-state-", ".bin");
+			this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.SPARSE, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error creating spill file: " + e.getMessage());
+		}
+		reset();
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	@Override
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * truncating and re-extending the file gives all zeros without writing them
+	 */
+	@Override
+	public void reset() {
+		try {
+			channel.truncate(0);
+			channel.write(ByteBuffer.allocate(1), (dimension << 4) - 1);
+			ByteBuffer one = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+			one.putDouble(1.0).putDouble(0.0).flip();
+			channel.write(one, 0);
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error resetting spill file: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public double probability(long index) {
+		ByteBuffer amp = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+		try {
+			channel.read(amp, index << 4);
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error reading spill file: " + e.getMessage());
+		}
+		double re = amp.getDouble(0);
+		double im = amp.getDouble(8);
+		return re * re + im * im;
+	}
+
+	/**
+	 * streaming the file a window at a time in order, rather than one read per amplitude
+	 * @param visitor
+	 */
+	@Override
+	public void forEachProbability(ProbabilityVisitor visitor) {
+		try {
+			for (long start = 0; start < dimension; start += blockAmps) {
+				try (Arena arena = Arena.ofConfined()) {
+					MemorySegment window = channel.map(FileChannel.MapMode.READ_ONLY, start << 4, blockAmps << 4, arena);
+					for (long j = 0; j < blockAmps; j++) {
+						double re = window.getAtIndex(DOUBLE, j << 1), im = window.getAtIndex(DOUBLE, (j << 1) + 1);
+						double p = re * re + im * im;
+						if (p > 0) visitor.visit(start + j, p);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error mapping spill file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * summing the probabilities of consecutive blocks of amplitudes, mapping the file in order
+	 * @param block amplitudes per block, a power of two
+	 * @param from first block
+	 * @param to block after the last
+	 * @param sums one entry per block, counted from block 0
+	 */
+	void sumBlocks(long block, long from, long to, double[] sums) {
+		long window = Math.max(block, blockAmps);
+		long end = to * block;
+		try {
+			for (long start = from * block; start < end; start += window) {
+				long length = Math.min(window, end - start);
+				try (Arena arena = Arena.ofConfined()) {
+					MemorySegment v = channel.map(FileChannel.MapMode.READ_ONLY, start << 4, length << 4, arena);
+					for (long b = 0; b < length; b += block) {
+						double sum = 0;
+						for (long j = b; j < b + block; j++) {
+							double re = v.getAtIndex(DOUBLE, j << 1), im = v.getAtIndex(DOUBLE, (j << 1) + 1);
+							sum += re * re + im * im;
+						}
+						sums[(int) ((start + b) / block)] = sum;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error mapping spill file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * probabilities of the basis states from the given one on, taken with one read
+	 * @param from
+	 * @param out one entry per basis state
+	 */
+	void probabilities(long from, double[] out) {
+		ByteBuffer amps = ByteBuffer.allocate(out.length << 4).order(ByteOrder.nativeOrder());
+		try {
+			while (amps.hasRemaining()) {
+				if (channel.read(amps, (from << 4) + amps.position()) < 0) break;
+			}
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error reading spill file: " + e.getMessage());
+		}
+		for (int j = 0; j < out.length; j++) {
+			double re = amps.getDouble(j << 4), im = amps.getDouble((j << 4) + 8);
+			out[j] = re * re + im * im;
+		}
+	}
+
+	@Override
+	public void setAmplitude(long index, double re, double im) {
+		ByteBuffer amp = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+		amp.putDouble(re).putDouble(im).flip();
+		try {
+			channel.write(amp, index << 4);
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error writing spill file: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void apply(QCSOperation op) {
+		if (op.gate == QCSGate.FUSED2) {
+			throw new QCSController.QCSException("Mapped state vector can't apply 4x4 fused gates");
+		}
+		if (op.kind == QCSGate.Kind.IDENTITY) return;
+		if (op.gate == QCSGate.SWAP) {
+			// a swap mixes two bits, done as three CX passes so every pass stays a 2x2 block update
+			int a = op.controls[0];
+			int b = op.target;
+			applyMatrix(b, 1L << a, PAULI_X, QCSGate.Kind.PERMUTATION);
+			applyMatrix(a, 1L << b, PAULI_X, QCSGate.Kind.PERMUTATION);
+			applyMatrix(b, 1L << a, PAULI_X, QCSGate.Kind.PERMUTATION);
+		} else if (op.kind == QCSGate.Kind.DIAGONAL) {
+			applyDiagonal(op.target, op.controlMask(), op.matrix);
+		} else {
+			applyMatrix(op.target, op.controlMask(), op.matrix, op.kind);
+		}
+	}
+
+	/**
+	 * size of the spill file windows mapped and updated since the last call
+	 * @return
+	 */
+	@Override
+	public String stepReport() {
+		String report = String.format("Spill file: %.1f MB mapped and updated", bytesMapped / 1048576.0);
+		bytesMapped = 0;
+		return report;
+	}
+
+	/**
+	 * closing the channel also deletes the spill file
+	 */
+	@Override
+	public void close() {
+		try {
+			channel.close();
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// DELETE_ON_CLOSE has the file removed anyway, the delete here only backs it up
+		}
+	}
+
+	/**
+	 * one pass of a 2x2 update over the file. Control bits above the block size are the same
+	 * for a whole block, so blocks they switch off are never read.
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param kind
+	 */
+	private void applyMatrix(int target, long controlMask, double[] m, QCSGate.Kind kind) {
+		final long bit = 1L << target;
+		final long blockMask = blockAmps - 1;
+		final long highControls = controlMask & ~blockMask;
+		final long lowControls = controlMask & blockMask;
+		final long blockBytes = blockAmps << 4;
+
+		try {
+			for (long start = 0; start < dimension; start += blockAmps) {
+				if ((start & highControls) != highControls) continue;
+
+				if (bit < blockAmps) {
+					try (Arena arena = Arena.ofShared()) {
+						MemorySegment window = channel.map(FileChannel.MapMode.READ_WRITE, start << 4, blockBytes, arena);
+						QCSPairTask.run(pool, blockAmps >> 1,
+								(from, to) -> QCSOffHeapStateVector.applyKind(window, kind, target, lowControls, m, from, to));
+					}
+					bytesMapped += blockBytes;
+				} else if ((start & bit) == 0) {
+					try (Arena arena = Arena.ofShared()) {
+						MemorySegment lo = channel.map(FileChannel.MapMode.READ_WRITE, start << 4, blockBytes, arena);
+						MemorySegment hi = channel.map(FileChannel.MapMode.READ_WRITE, (start | bit) << 4, blockBytes, arena);
+						QCSPairTask.run(pool, blockAmps,
+								(from, to) -> applyMatrixSplit(lo, hi, lowControls, m, from, to));
+					}
+					bytesMapped += blockBytes << 1;
+				}
+			}
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error mapping spill file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * one pass of a diagonal gate. Amplitudes never mix, so a target bit above the block size
+	 * gives one phase for the whole block and blocks whose phase is 1 are never read.
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 */
+	private void applyDiagonal(int target, long controlMask, double[] m) {
+		final long bit = 1L << target;
+		final long blockMask = blockAmps - 1;
+		final long highControls = controlMask & ~blockMask;
+		final long lowControls = controlMask & blockMask;
+		final long blockBytes = blockAmps << 4;
+
+		try {
+			for (long start = 0; start < dimension; start += blockAmps) {
+				if ((start & highControls) != highControls) continue;
+
+				if (bit < blockAmps) {
+					try (Arena arena = Arena.ofShared()) {
+						MemorySegment window = channel.map(FileChannel.MapMode.READ_WRITE, start << 4, blockBytes, arena);
+						QCSPairTask.run(pool, blockAmps >> 1,
+								(from, to) -> QCSOffHeapStateVector.applyDiagonal(window, target, lowControls, m, from, to));
+					}
+				} else {
+					int half = ((start & bit) == 0) ? 0 : 6;
+					double pr = m[half], pi = m[half + 1];
+					if (pr == 1 && pi == 0) continue;
+					try (Arena arena = Arena.ofShared()) {
+						MemorySegment window = channel.map(FileChannel.MapMode.READ_WRITE, start << 4, blockBytes, arena);
+						QCSPairTask.run(pool, blockAmps, (from, to) -> applyPhase(window, lowControls, pr, pi, from, to));
+					}
+				}
+				bytesMapped += blockBytes;
+			}
+		} catch (IOException e) {
+			throw new QCSController.QCSException("Error mapping spill file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * multiplying amplitudes from to to-1 of a window by one phase where the controls are set
+	 * @param v
+	 * @param controlMask
+	 * @param pr
+	 * @param pi
+	 * @param from
+	 * @param to
+	 */
+	private static void applyPhase(MemorySegment v, long controlMask, double pr, double pi, long from, long to) {
+		for (long j = from; j < to; j++) {
+			if ((j & controlMask) != controlMask) continue;
+			long p = j << 1;
+			double re = v.getAtIndex(DOUBLE, p), im = v.getAtIndex(DOUBLE, p + 1);
+			v.setAtIndex(DOUBLE, p, pr * re - pi * im);
+			v.setAtIndex(DOUBLE, p + 1, pr * im + pi * re);
+		}
+	}
+
+	/**
+	 * 2x2 update where amplitude j of lo pairs with amplitude j of hi
+	 * @param lo
+	 * @param hi
+	 * @param controlMask control bits inside the block
+	 * @param m
+	 * @param from
+	 * @param to
+	 */
+	private static void applyMatrixSplit(MemorySegment lo, MemorySegment hi, long controlMask, double[] m, long from, long to) {
+		final double m00r = m[0], m00i = m[1], m01r = m[2], m01i = m[3];
+		final double m10r = m[4], m10i = m[5], m11r = m[6], m11i = m[7];
+
+		for (long j = from; j < to; j++) {
+			if ((j & controlMask) != controlMask) continue;
+			long p = j << 1;
+
+			double ar = lo.getAtIndex(DOUBLE, p), ai = lo.getAtIndex(DOUBLE, p + 1);
+			double br = hi.getAtIndex(DOUBLE, p), bi = hi.getAtIndex(DOUBLE, p + 1);
+
+			lo.setAtIndex(DOUBLE, p, m00r * ar - m00i * ai + m01r * br - m01i * bi);
+			lo.setAtIndex(DOUBLE, p + 1, m00r * ai + m00i * ar + m01r * bi + m01i * br);
+			hi.setAtIndex(DOUBLE, p, m10r * ar - m10i * ai + m11r * br - m11i * bi);
+			hi.setAtIndex(DOUBLE, p + 1, m10r * ai + m10i * ar + m11r * bi + m11i * br);
+		}
+	}
+}
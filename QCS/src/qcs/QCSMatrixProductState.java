@@ -0,0 +1,678 @@
+package qcs;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Matrix product state backend: one tensor per qubit, of shape (left bond, 2, right bond), kept
+ * as interleaved re/im doubles. Two-qubit gates contract the neighbouring tensors, apply the 4x4
+ * gate and split them again with an SVD that keeps at most maxBond singular values. Gates on
+ * qubits that are not neighbours are brought together with SWAPs and moved back afterwards.
+ * Cost grows with the entanglement of the circuit instead of 2^n.
+ */
+
+public class QCSMatrixProductState implements QCSBackend {
+
+	public static final int DEFAULT_MAX_BOND = 64;
+
+	// singular values below this fraction of the largest are dropped even under maxBond
+	private static final double CUTOFF = 1e-12;
+	// prefixes kept per qubit by the top K search at least
+	private static final int BEAM = 32;
+
+	private static final double[] SWAP4 = QCSGateFusion.swapMatrix();
+	private static final double R = 1.0 / Math.sqrt(2.0);
+	private static final double[] T_DAGGER = {1, 0, 0, 0, 0, 0, R, -R};
+
+	private final int qubits;
+	private final int maxBond;
+	private final double[][] tensors;
+	private final int[] bond;
+	private double stepError = 0;
+	private double totalError = 0;
+
+	/**
+	 * constructor, starts in the |0...0> state
+	 * @param qubits
+	 * @param maxBond largest bond dimension kept by the SVD
+	 */
+	public QCSMatrixProductState(int qubits, int maxBond) {
+		if (qubits < 1) {
+			throw new QCSController.QCSException("MPS backend needs at least 1 qubit, got " + qubits);
+		}
+		if (maxBond < 1) {
+			throw new QCSController.QCSException("Bond dimension must be a positive integer.");
+		}
+		this.qubits = qubits;
+		this.maxBond = maxBond;
+		this.tensors = new double[qubits][];
+		this.bond = new int[qubits + 1];
+		reset();
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	/**
+	 * every tensor back to a 1x2x1 |0>
+	 */
+	@Override
+	public void reset() {
+		for (int q = 0; q < qubits; q++) {
+			tensors[q] = new double[] {1, 0, 0, 0};
+		}
+		java.util.Arrays.fill(bond, 1);
+		stepError = 0;
+		totalError = 0;
+	}
+
+	@Override
+	public QCSBackend copy() {
+		QCSMatrixProductState copy = new QCSMatrixProductState(qubits, maxBond);
+		for (int q = 0; q < qubits; q++) {
+			copy.tensors[q] = tensors[q].clone();
+		}
+		System.arraycopy(bond, 0, copy.bond, 0, bond.length);
+		copy.totalError = totalError;
+		return copy;
+	}
+
+	@Override
+	public long sizeBytes() {
+		long bytes = 0;
+		for (double[] t : tensors) {
+			bytes += (long) t.length << 3;
+		}
+		return bytes;
+	}
+
+	/**
+	 * contracting the chain along the bits of the index
+	 * @param index
+	 * @return
+	 */
+	@Override
+	public double probability(long index) {
+		if (qubits > 63) {
+			throw new QCSController.QCSException("Basis index can't address " + qubits + " qubits");
+		}
+		double[] v = {1, 0};
+		for (int q = 0; q < qubits; q++) {
+			v = contract(q, v, (int) (index >>> q) & 1);
+		}
+		return v[0] * v[0] + v[1] * v[1];
+	}
+
+	/**
+	 * sampler measuring the qubits left to right, each from its probability given the ones
+	 * already measured. A shot costs one pass over the chain, O(n bond^2), and has no limit on
+	 * the number of qubits.
+	 * @return
+	 */
+	@Override
+	public Sampler sampler() {
+		double[][] env = environments();
+		return (random, bits) -> {
+			java.util.Arrays.fill(bits, 0L);
+			double[] v = {1, 0};
+			for (int q = 0; q < qubits; q++) {
+				double[] zero = contract(q, v, 0);
+				double[] one = contract(q, v, 1);
+				double p0 = weight(q + 1, zero, env[q + 1]);
+				double p1 = weight(q + 1, one, env[q + 1]);
+				int s = (random.nextDouble() * (p0 + p1) < p1) ? 1 : 0;
+				v = (s == 1) ? one : zero;
+				if (s == 1) bits[q >>> 6] |= 1L << q;
+
+				// scaled back to weight 1 so long chains don't underflow
+				double p = (s == 1) ? p1 : p0;
+				if (p > 0) {
+					double scale = 1.0 / Math.sqrt(p);
+					for (int i = 0; i < v.length; i++) {
+						v[i] *= scale;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * listing the outcomes depth first, qubit 0 first. The probability of every prefix is read
+	 * from the contracted right half of the chain, so branches with no weight are cut before
+	 * their 2^k leaves are reached.
+	 * @param visitor
+	 */
+	@Override
+	public void forEachProbability(ProbabilityVisitor visitor) {
+		if (qubits > 63) {
+			throw new QCSController.QCSException("Basis index can't address " + qubits + " qubits");
+		}
+		branch(0, 0L, new double[] {1, 0}, environments(), visitor);
+	}
+
+	private void branch(int q, long index, double[] v, double[][] env, ProbabilityVisitor visitor) {
+		double p = weight(q, v, env[q]);
+		if (p <= CUTOFF * CUTOFF) return;
+		if (q == qubits) {
+			visitor.visit(index, p);
+			return;
+		}
+		for (int s = 0; s < 2; s++) {
+			branch(q + 1, index | ((long) s << q), contract(q, v, s), env, visitor);
+		}
+	}
+
+	/**
+	 * the most likely outcomes, by a beam search over the qubits left to right. Each prefix is
+	 * weighed by its marginal probability and only the heaviest 2K, at least BEAM, go on to the
+	 * next qubit, so the search costs O(n K bond^2) and never lists the whole support. The outcomes
+	 * found have their exact probabilities, and everything else is reported as "other".
+	 * @param k
+	 * @param cancelled checked once per qubit
+	 * @return
+	 */
+	QCSTopK beam(int k, java.util.function.BooleanSupplier cancelled) {
+		QCSTopK top = new QCSTopK(k);
+		int width = Math.max(2 * k, BEAM);
+		int words = (qubits + 63) >>> 6;
+		double[][] env = environments();
+
+		long[][] bits = {new long[words]};
+		double[][] vectors = {{1, 0}};
+		double[] weights = {weight(0, vectors[0], env[0])};
+		double total = weights[0];
+
+		for (int q = 0; q < qubits && bits.length > 0; q++) {
+			QCSEngine.checkCancelled(cancelled);
+			int n = bits.length * 2;
+			double[][] nextVectors = new double[n][];
+			double[] nextWeights = new double[n];
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				nextVectors[i] = contract(q, vectors[i >> 1], i & 1);
+				nextWeights[i] = weight(q + 1, nextVectors[i], env[q + 1]);
+				order[i] = i;
+			}
+			java.util.Arrays.sort(order, (a, b) -> Double.compare(nextWeights[b], nextWeights[a]));
+
+			int kept = 0;
+			while (kept < Math.min(width, n) && nextWeights[order[kept]] > 0) kept++;
+			long[][] keptBits = new long[kept][];
+			double[][] keptVectors = new double[kept][];
+			double[] keptWeights = new double[kept];
+			for (int i = 0; i < kept; i++) {
+				int from = order[i];
+				keptBits[i] = bits[from >> 1].clone();
+				if ((from & 1) != 0) keptBits[i][q >>> 6] |= 1L << q;
+				keptVectors[i] = nextVectors[from];
+				keptWeights[i] = nextWeights[from];
+			}
+			bits = keptBits;
+			vectors = keptVectors;
+			weights = keptWeights;
+		}
+
+		for (int i = 0; i < bits.length; i++) {
+			top.offer(bits[i], qubits, weights[i]);
+		}
+		top.addUnlisted(Math.max(0, total - top.getTotal()));
+		return top;
+	}
+
+	/**
+	 * the contracted right half of the chain from every bond
+	 * @return env[q] = sum over the qubits q.. of A A*, a bond[q] x bond[q] matrix
+	 */
+	private double[][] environments() {
+		double[][] env = new double[qubits + 1][];
+		env[qubits] = new double[] {1, 0};
+		for (int q = qubits - 1; q >= 0; q--) {
+			env[q] = environment(q, env[q + 1]);
+		}
+		return env;
+	}
+
+	/**
+	 * moving a row vector over bond q across tensor q, with qubit q fixed to s
+	 * @param q
+	 * @param v bond[q] amplitudes
+	 * @param s
+	 * @return bond[q+1] amplitudes
+	 */
+	private double[] contract(int q, double[] v, int s) {
+		int left = bond[q];
+		int right = bond[q + 1];
+		double[] a = tensors[q];
+		double[] next = new double[right * 2];
+		for (int l = 0; l < left; l++) {
+			double vr = v[l * 2], vi = v[l * 2 + 1];
+			if (vr == 0 && vi == 0) continue;
+			int base = (l * 2 + s) * right;
+			for (int r = 0; r < right; r++) {
+				double ar = a[(base + r) * 2], ai = a[(base + r) * 2 + 1];
+				next[r * 2] += vr * ar - vi * ai;
+				next[r * 2 + 1] += vr * ai + vi * ar;
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * probability of the qubits fixed so far, a row vector over bond q against the environment to its right
+	 * @param q
+	 * @param v
+	 * @param e
+	 * @return
+	 */
+	private double weight(int q, double[] v, double[] e) {
+		int b = bond[q];
+		double p = 0;
+		for (int l = 0; l < b; l++) {
+			double vr = v[l * 2], vi = v[l * 2 + 1];
+			for (int m = 0; m < b; m++) {
+				double er = e[(l * b + m) * 2], ei = e[(l * b + m) * 2 + 1];
+				double wr = v[m * 2], wi = -v[m * 2 + 1];
+				// real part of v_l e_lm conj(v_m)
+				double xr = vr * er - vi * ei, xi = vr * ei + vi * er;
+				p += xr * wr - xi * wi;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * contracting one tensor and its conjugate onto the environment to its right
+	 * @param q
+	 * @param er bond[q+1] x bond[q+1]
+	 * @return bond[q] x bond[q]
+	 */
+	private double[] environment(int q, double[] er) {
+		int left = bond[q];
+		int right = bond[q + 1];
+		double[] a = tensors[q];
+		double[] t = new double[left * 2 * right * 2];
+		// t[l,s,r'] = sum_r A[l,s,r] er[r,r']
+		for (int ls = 0; ls < left * 2; ls++) {
+			for (int r = 0; r < right; r++) {
+				double ar = a[(ls * right + r) * 2], ai = a[(ls * right + r) * 2 + 1];
+				if (ar == 0 && ai == 0) continue;
+				for (int rr = 0; rr < right; rr++) {
+					double xr = er[(r * right + rr) * 2], xi = er[(r * right + rr) * 2 + 1];
+					t[(ls * right + rr) * 2] += ar * xr - ai * xi;
+					t[(ls * right + rr) * 2 + 1] += ar * xi + ai * xr;
+				}
+			}
+		}
+		// out[l,l'] = sum_{s,r'} t[l,s,r'] conj(A[l',s,r'])
+		double[] out = new double[left * left * 2];
+		for (int l = 0; l < left; l++) {
+			for (int m = 0; m < left; m++) {
+				double re = 0, im = 0;
+				for (int s = 0; s < 2; s++) {
+					int tb = (l * 2 + s) * right;
+					int ab = (m * 2 + s) * right;
+					for (int r = 0; r < right; r++) {
+						double tr = t[(tb + r) * 2], ti = t[(tb + r) * 2 + 1];
+						double br = a[(ab + r) * 2], bi = -a[(ab + r) * 2 + 1];
+						re += tr * br - ti * bi;
+						im += tr * bi + ti * br;
+					}
+				}
+				out[(l * left + m) * 2] = re;
+				out[(l * left + m) * 2 + 1] = im;
+			}
+		}
+		return out;
+	}
+
+	@Override
+	public void apply(QCSOperation op) {
+		switch (op.gate) {
+		case SWAP -> applyTwo(op.controls[0], op.target, SWAP4);
+		case CX, CU -> applyTwo(op.controls[0], op.target, QCSGateFusion.controlled(op.matrix));
+		case FUSED2 -> applyTwo(op.controls[0], op.target, op.matrix);
+		case CCX -> applyToffoli(op.controls[0], op.controls[1], op.target);
+		default -> applySingle(op.target, op.matrix);
+		}
+	}
+
+	/**
+	 * weight of the singular values dropped since the last reset
+	 * @return
+	 */
+	double getTruncationError() {
+		return totalError;
+	}
+
+	/**
+	 * weight of the singular values dropped since the last call, and in total
+	 * @return
+	 */
+	@Override
+	public String stepReport() {
+		int largest = 1;
+		for (int b : bond) {
+			largest = Math.max(largest, b);
+		}
+		String report = String.format("MPS: max bond %d/%d, truncation error %.3e (total %.3e)",
+				largest, maxBond, stepError, totalError);
+		stepError = 0;
+		return report;
+	}
+
+	/**
+	 * 2x2 gate on the physical index of one tensor
+	 * @param q
+	 * @param m
+	 */
+	private void applySingle(int q, double[] m) {
+		double[] a = tensors[q];
+		int left = bond[q];
+		int right = bond[q + 1];
+		for (int l = 0; l < left; l++) {
+			for (int r = 0; r < right; r++) {
+				int p = ((l * 2) * right + r) * 2;
+				int t = ((l * 2 + 1) * right + r) * 2;
+				double ar = a[p], ai = a[p + 1];
+				double br = a[t], bi = a[t + 1];
+				a[p] = m[0] * ar - m[1] * ai + m[2] * br - m[3] * bi;
+				a[p + 1] = m[0] * ai + m[1] * ar + m[2] * bi + m[3] * br;
+				a[t] = m[4] * ar - m[5] * ai + m[6] * br - m[7] * bi;
+				a[t + 1] = m[4] * ai + m[5] * ar + m[6] * bi + m[7] * br;
+			}
+		}
+	}
+
+	/**
+	 * Toffoli written with the usual six CX and T / T-dagger gates, since the chain only splits pairs
+	 * @param a
+	 * @param b
+	 * @param c
+	 */
+	private void applyToffoli(int a, int b, int c) {
+		double[] h = QCSGate.H.matrix(0, 0, 0);
+		double[] t = QCSGate.T.matrix(0, 0, 0);
+		double[] cx = QCSGateFusion.controlled(QCSGate.X.matrix(0, 0, 0));
+		applySingle(c, h);
+		applyTwo(b, c, cx);
+		applySingle(c, T_DAGGER);
+		applyTwo(a, c, cx);
+		applySingle(c, t);
+		applyTwo(b, c, cx);
+		applySingle(c, T_DAGGER);
+		applyTwo(a, c, cx);
+		applySingle(b, t);
+		applySingle(c, t);
+		applySingle(c, h);
+		applyTwo(a, b, cx);
+		applySingle(a, t);
+		applySingle(b, T_DAGGER);
+		applyTwo(a, b, cx);
+	}
+
+	/**
+	 * 4x4 gate on qubits a and b, basis ordered as (bit of a, bit of b)
+	 * @param a
+	 * @param b
+	 * @param g
+	 */
+	private void applyTwo(int a, int b, double[] g) {
+		if (a > b) {
+			g = QCSGateFusion.exchangeQubits(g);
+			int t = a;
+			a = b;
+			b = t;
+		}
+		// walk b's content down next to a, apply, then walk it back
+		for (int q = b - 1; q > a; q--) {
+			applyAdjacent(q, SWAP4);
+		}
+		applyAdjacent(a, g);
+		for (int q = a + 1; q < b; q++) {
+			applyAdjacent(q, SWAP4);
+		}
+	}
+
+	/**
+	 * contracting tensors q and q+1, applying the gate and splitting them with a truncated SVD
+	 * @param q
+	 * @param g
+	 */
+	private void applyAdjacent(int q, double[] g) {
+		int left = bond[q];
+		int mid = bond[q + 1];
+		int right = bond[q + 2];
+		double[] a = tensors[q];
+		double[] b = tensors[q + 1];
+
+		// theta[l, s1, s2, r] = sum over m of a[l, s1, m] b[m, s2, r]
+		double[] theta = new double[left * 4 * right * 2];
+		for (int l = 0; l < left; l++) {
+			for (int s1 = 0; s1 < 2; s1++) {
+				for (int m = 0; m < mid; m++) {
+					int pa = ((l * 2 + s1) * mid + m) * 2;
+					double ar = a[pa], ai = a[pa + 1];
+					if (ar == 0 && ai == 0) continue;
+					for (int s2 = 0; s2 < 2; s2++) {
+						int pb = ((m * 2 + s2) * right) * 2;
+						int pt = (((l * 2 + s1) * 2 + s2) * right) * 2;
+						for (int r = 0; r < right; r++) {
+							double br = b[pb + r * 2], bi = b[pb + r * 2 + 1];
+							theta[pt + r * 2] += ar * br - ai * bi;
+							theta[pt + r * 2 + 1] += ar * bi + ai * br;
+						}
+					}
+				}
+			}
+		}
+
+		// gate on the (s1, s2) index
+		double[] out = new double[theta.length];
+		for (int l = 0; l < left; l++) {
+			for (int r = 0; r < right; r++) {
+				for (int i = 0; i < 4; i++) {
+					double sr = 0, si = 0;
+					for (int j = 0; j < 4; j++) {
+						int pt = ((l * 4 + j) * right + r) * 2;
+						double gr = g[(i * 4 + j) * 2], gi = g[(i * 4 + j) * 2 + 1];
+						sr += gr * theta[pt] - gi * theta[pt + 1];
+						si += gr * theta[pt + 1] + gi * theta[pt];
+					}
+					int po = ((l * 4 + i) * right + r) * 2;
+					out[po] = sr;
+					out[po + 1] = si;
+				}
+			}
+		}
+
+		// rows (l, s1), columns (s2, r)
+		int rows = left * 2;
+		int cols = 2 * right;
+		Svd svd = Svd.of(out, rows, cols);
+
+		double total = 0;
+		for (double s : svd.sigma) {
+			total += s * s;
+		}
+		int keep = 0;
+		double kept = 0;
+		while (keep < svd.sigma.length && keep < maxBond && svd.sigma[keep] > CUTOFF * svd.sigma[0]) {
+			kept += svd.sigma[keep] * svd.sigma[keep];
+			keep++;
+		}
+		keep = Math.max(keep, 1);
+		if (total > 0) {
+			double error = 1.0 - kept / total;
+			stepError += Math.max(error, 0);
+			totalError += Math.max(error, 0);
+		}
+		// renormalize what is left so probabilities still add up to one
+		double scale = (kept > 0) ? Math.sqrt(total / kept) : 1.0;
+
+		double[] newA = new double[rows * keep * 2];
+		double[] newB = new double[keep * cols * 2];
+		for (int row = 0; row < rows; row++) {
+			for (int k = 0; k < keep; k++) {
+				int pu = (svd.order[k] * rows + row) * 2;
+				newA[(row * keep + k) * 2] = svd.u[pu];
+				newA[(row * keep + k) * 2 + 1] = svd.u[pu + 1];
+			}
+		}
+		for (int k = 0; k < keep; k++) {
+			double s = svd.sigma[k] * scale;
+			for (int col = 0; col < cols; col++) {
+				// V^H, so the conjugate of V
+				int pv = (svd.order[k] * cols + col) * 2;
+				newB[(k * cols + col) * 2] = s * svd.v[pv];
+				newB[(k * cols + col) * 2 + 1] = -s * svd.v[pv + 1];
+			}
+		}
+		tensors[q] = newA;
+		tensors[q + 1] = newB;
+		bond[q + 1] = keep;
+	}
+
+	/**
+	 * Inner class for a complex SVD A = U diag(sigma) V^H by one-sided Jacobi rotations.
+	 * u and v are column-major, sigma is sorted largest first and order maps it to their columns.
+	 */
+	static final class Svd {
+
+		private static final int MAX_SWEEPS = 60;
+		private static final double EPS = 1e-15;
+
+		double[] u;
+		double[] v;
+		double[] sigma;
+		int[] order;
+
+		/**
+		 * decomposing a row-major rows x cols complex matrix
+		 * @param a
+		 * @param rows
+		 * @param cols
+		 * @return
+		 */
+		static Svd of(double[] a, int rows, int cols) {
+			// the Jacobi sweep orthogonalizes columns, so it runs on whichever of A and A^H is taller
+			boolean transpose = cols > rows;
+			int m = transpose ? cols : rows;
+			int n = transpose ? rows : cols;
+			double[] w = new double[m * n * 2];
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					double re = a[(i * cols + j) * 2], im = a[(i * cols + j) * 2 + 1];
+					if (transpose) {
+						w[(i * m + j) * 2] = re;
+						w[(i * m + j) * 2 + 1] = -im;
+					} else {
+						w[(j * m + i) * 2] = re;
+						w[(j * m + i) * 2 + 1] = im;
+					}
+				}
+			}
+
+			double[] vv = new double[n * n * 2];
+			for (int j = 0; j < n; j++) {
+				vv[(j * n + j) * 2] = 1;
+			}
+			jacobi(w, m, n, vv);
+
+			Svd svd = new Svd();
+			svd.sigma = new double[n];
+			for (int j = 0; j < n; j++) {
+				double norm = 0;
+				for (int i = 0; i < m; i++) {
+					norm += w[(j * m + i) * 2] * w[(j * m + i) * 2] + w[(j * m + i) * 2 + 1] * w[(j * m + i) * 2 + 1];
+				}
+				norm = Math.sqrt(norm);
+				svd.sigma[j] = norm;
+				if (norm > 0) {
+					for (int i = 0; i < m; i++) {
+						w[(j * m + i) * 2] /= norm;
+						w[(j * m + i) * 2 + 1] /= norm;
+					}
+				}
+			}
+
+			// A = W S V^H, or for the transpose A^H = W S V^H so A = V S W^H
+			svd.u = transpose ? vv : w;
+			svd.v = transpose ? w : vv;
+
+			Integer[] idx = new Integer[n];
+			for (int j = 0; j < n; j++) {
+				idx[j] = j;
+			}
+			double[] s = svd.sigma;
+			java.util.Arrays.sort(idx, (x, y) -> Double.compare(s[y], s[x]));
+			svd.order = new int[n];
+			double[] sorted = new double[n];
+			for (int j = 0; j < n; j++) {
+				svd.order[j] = idx[j];
+				sorted[j] = s[idx[j]];
+			}
+			svd.sigma = sorted;
+			return svd;
+		}
+
+		/**
+		 * rotating pairs of columns of w (m x n, column-major) until they are orthogonal,
+		 * applying the same rotations to v
+		 * @param w
+		 * @param m
+		 * @param n
+		 * @param v
+		 */
+		private static void jacobi(double[] w, int m, int n, double[] v) {
+			for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+				boolean rotated = false;
+				for (int p = 0; p < n - 1; p++) {
+					for (int q = p + 1; q < n; q++) {
+						double alpha = 0, beta = 0, gr = 0, gi = 0;
+						for (int i = 0; i < m; i++) {
+							double pr = w[(p * m + i) * 2], pi = w[(p * m + i) * 2 + 1];
+							double qr = w[(q * m + i) * 2], qi = w[(q * m + i) * 2 + 1];
+							alpha += pr * pr + pi * pi;
+							beta += qr * qr + qi * qi;
+							// conj(a_p) . a_q
+							gr += pr * qr + pi * qi;
+							gi += pr * qi - pi * qr;
+						}
+						double gamma = Math.hypot(gr, gi);
+						if (gamma <= EPS * Math.sqrt(alpha * beta) || gamma == 0) continue;
+						rotated = true;
+
+						// take the phase out of column q so the inner product is real, then a real rotation
+						double er = gr / gamma, ei = -gi / gamma;
+						double zeta = (beta - alpha) / (2 * gamma);
+						double t = Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+						if (zeta == 0) t = 1;
+						double c = 1 / Math.sqrt(1 + t * t);
+						double s = c * t;
+						rotate(w, m, p, q, er, ei, c, s);
+						rotate(v, n, p, q, er, ei, c, s);
+					}
+				}
+				if (!rotated) return;
+			}
+		}
+
+		private static void rotate(double[] a, int m, int p, int q, double er, double ei, double c, double s) {
+			for (int i = 0; i < m; i++) {
+				int ip = (p * m + i) * 2;
+				int iq = (q * m + i) * 2;
+				double qr = a[iq] * er - a[iq + 1] * ei;
+				double qi = a[iq] * ei + a[iq + 1] * er;
+				double pr = a[ip], pi = a[ip + 1];
+				a[ip] = c * pr - s * qr;
+				a[ip + 1] = c * pi - s * qi;
+				a[iq] = s * pr + c * qr;
+				a[iq + 1] = s * pi + c * qi;
+			}
+		}
+	}
+}
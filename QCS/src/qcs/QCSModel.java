@@ -1,6 +1,9 @@
 package qcs;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -10,14 +13,29 @@ import java.util.ResourceBundle;
  * Professor: Paulo Sousa
  * Program to create an interface for a quantum circuit simulator
  * 
- * Model class for holding data
+ * Model class for holding data. The grid lives only here, and edits are reported to the
+ * listeners in batches of (row, col, old, new) so views and the engine only redo what changed.
  */
 
 public class QCSModel {
 	
-    private String[][] gateGrid;
+    // gate opcode of every cell, row by row, QCSGate.EMPTY where there is none
+    private byte[] cells;
+    // U and CU cells in each column, so a phase edit finds the first column it affects without a grid scan
+    private int[] phaseCells;
     public int[] gridSize;
     public ResourceBundle bundle;
+    private final double[] phaseParams = new double[3];
+    private final List<ChangeListener> listeners = new ArrayList<>();
+    private Changes pending;
+    private int batchDepth = 0;
+
+    /**
+     * Interface for hearing about edits, called on the thread that made them
+     */
+    public interface ChangeListener {
+        void gridChanged(Changes changes);
+    }
 
     /**
      * constructor
@@ -28,6 +46,26 @@ public class QCSModel {
         setGridSize(3, 5); // default: 3 rows (qubits), 5 columns (steps)
     }
 
+    /**
+     * copy constructor, the copy shares the bundle but none of the grid or listeners
+     * @param other model to copy
+     */
+    private QCSModel(QCSModel other) {
+        bundle = other.bundle;
+        gridSize = other.gridSize.clone();
+        cells = other.cells.clone();
+        phaseCells = other.phaseCells.clone();
+        System.arraycopy(other.phaseParams, 0, phaseParams, 0, phaseParams.length);
+    }
+
+    /**
+     * snapshot of the grid and phase parameters for a job on another thread
+     * @return copy of this model without listeners
+     */
+    public QCSModel copy() {
+        return new QCSModel(this);
+    }
+
     /**
      * setting default grid size for application
      * @param rows
@@ -35,48 +73,206 @@ public class QCSModel {
      */
     public void setGridSize(int rows, int cols) {
         this.gridSize = new int[]{cols, rows};
-        this.gateGrid = new String[rows][cols];
+        this.cells = new byte[Math.multiplyExact(rows, cols)];
+        this.phaseCells = new int[cols];
+        changedAll();
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * running several edits as one batch, the listeners hear about them once at the end
+     * @param edits
+     */
+    public void batch(Runnable edits) {
+        batchDepth++;
+        try {
+            edits.run();
+        } finally {
+            batchDepth--;
+            if (batchDepth == 0) fire();
+        }
     }
 
     /**
-     * 
+     * number of rows (qubits)
+     * @return
+     */
+    public int getRows() {
+        return gridSize[1];
+    }
+
+    /**
+     * number of columns (steps)
+     * @return
+     */
+    public int getColumns() {
+        return gridSize[0];
+    }
+
+    /**
+     * phase parameters a, b, c used by the U and CU gates
+     * @return
+     */
+    public double[] getPhaseParams() {
+        return phaseParams;
+    }
+
+    /**
+     * setting one of the phase parameters
+     * @param index 0 for a, 1 for b, 2 for c
+     * @param value
+     */
+    public void setPhaseParam(int index, double value) {
+        if (phaseParams[index] == value) return;
+        phaseParams[index] = value;
+        if (listeners.isEmpty()) return;
+        pending().phase = true;
+        if (batchDepth == 0) fire();
+    }
+
+    /**
+     * name of the gate in a cell
      * @param row
      * @param col
-     * @return
+     * @return null for an empty cell
      */
     public String getGate(int row, int col) {
-        return gateGrid[row][col];
+        QCSGate gate = gate(row, col);
+        return (gate == null) ? null : gate.name();
+    }
+
+    /**
+     * gate in a cell
+     * @param row
+     * @param col
+     * @return null for an empty cell
+     */
+    public QCSGate gate(int row, int col) {
+        return QCSGate.fromOpcode(cells[row * getColumns() + col]);
+    }
+
+    /**
+     * opcode of a cell
+     * @param row
+     * @param col
+     * @return
+     */
+    public byte getOpcode(int row, int col) {
+        return cells[row * getColumns() + col];
+    }
+
+    /**
+     * every cell's opcode, row by row, for loops over the whole grid. Not a copy.
+     * @return
+     */
+    public byte[] getCells() {
+        return cells;
     }
 
     public void setGate(int row, int col, String gate) {
-        if (row >= 0 && row < gateGrid.length && col >= 0 && col < gateGrid[0].length) {
-            gateGrid[row][col] = gate;
+        setGate(row, col, QCSGate.fromName(gate));
+    }
+
+    public void setGate(int row, int col, QCSGate gate) {
+        if (row >= 0 && row < getRows() && col >= 0 && col < getColumns()) {
+            int i = row * getColumns() + col;
+            byte old = cells[i];
+            byte opcode = (gate == null) ? QCSGate.EMPTY : gate.opcode();
+            if (old == opcode) return;
+            cells[i] = opcode;
+            if (usesPhase(old)) phaseCells[col]--;
+            if (usesPhase(opcode)) phaseCells[col]++;
+            if (listeners.isEmpty()) return;
+            pending().add(row, col, old, opcode);
+            if (batchDepth == 0) fire();
         } else {
             System.err.println("Attempted to access out-of-bounds grid index: row=" + row + ", col=" + col);
         }
     }
 
     public void clearGate(int row, int col) {
-        gateGrid[row][col] = null;
+        setGate(row, col, (QCSGate) null);
     }
 
     public void resetGrid() {
-        for (int row = 0; row < gridSize[0]; row++) {
-            for (int col = 0; col < gridSize[1]; col++) {
-                gateGrid[row][col] = null;
-            }
+        Arrays.fill(cells, QCSGate.EMPTY);
+        Arrays.fill(phaseCells, 0);
+        changedAll();
+    }
+
+    /**
+     * copying opcodes into the start of a row, for loading whole rows at once
+     * @param row
+     * @param opcodes
+     * @param from
+     * @param length
+     */
+    public void setRow(int row, byte[] opcodes, int from, int length) {
+        int start = row * getColumns();
+        for (int col = 0; col < length; col++) {
+            if (usesPhase(cells[start + col])) phaseCells[col]--;
+            if (usesPhase(opcodes[from + col])) phaseCells[col]++;
+        }
+        System.arraycopy(opcodes, from, cells, start, length);
+        changedAll();
+    }
+
+    /**
+     * reporting that any cell may have changed, for edits too big to list
+     */
+    private void changedAll() {
+        if (listeners.isEmpty()) return;
+        pending().full = true;
+        if (batchDepth == 0) fire();
+    }
+
+    private Changes pending() {
+        if (pending == null) pending = new Changes();
+        return pending;
+    }
+
+    /**
+     * handing the edits so far to the listeners
+     */
+    private void fire() {
+        Changes changes = pending;
+        pending = null;
+        if (changes == null) return;
+        if (changes.phase) changes.firstColumn = Math.min(changes.firstColumn, firstPhaseColumn());
+        for (ChangeListener listener : new ArrayList<>(listeners)) {
+            listener.gridChanged(changes);
+        }
+    }
+
+    /**
+     * first column with a gate that reads the phase parameters
+     * @return Integer.MAX_VALUE when there is none
+     */
+    private int firstPhaseColumn() {
+        for (int col = 0; col < phaseCells.length; col++) {
+            if (phaseCells[col] > 0) return col;
         }
+        return Integer.MAX_VALUE;
+    }
+
+    private static boolean usesPhase(byte opcode) {
+        return opcode == QCSGate.U.opcode() || opcode == QCSGate.CU.opcode();
     }
 
     // Save format: one gate per line in row,col,gate format
     public void saveToFile(File file) throws IOException {
+        int cols = getColumns();
         try (PrintWriter writer = new PrintWriter(file)) {
-            for (int row = 0; row < gridSize[0]; row++) {
-                for (int col = 0; col < gridSize[1]; col++) {
-                    String gate = gateGrid[row][col];
-                    if (gate != null && !gate.isBlank()) {
-                        writer.println(row + "," + col + "," + gate);
-                    }
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] != QCSGate.EMPTY) {
+                    writer.println(i / cols + "," + i % cols + "," + QCSGate.fromOpcode(cells[i]).name());
                 }
             }
         }
@@ -97,4 +293,82 @@ public class QCSModel {
             }
         }
     }
+
+    /**
+     * Inner class listing the cells changed by one batch of edits
+     */
+    public static final class Changes {
+
+        private int size = 0;
+        private int[] rows = new int[8];
+        private int[] cols = new int[8];
+        private byte[] before = new byte[8];
+        private byte[] after = new byte[8];
+        private boolean full = false;
+        private boolean phase = false;
+        private int firstColumn = Integer.MAX_VALUE;
+
+        private void add(int row, int col, byte old, byte opcode) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                cols = Arrays.copyOf(cols, size * 2);
+                before = Arrays.copyOf(before, size * 2);
+                after = Arrays.copyOf(after, size * 2);
+            }
+            rows[size] = row;
+            cols[size] = col;
+            before[size] = old;
+            after[size] = opcode;
+            size++;
+            firstColumn = Math.min(firstColumn, col);
+        }
+
+        /**
+         * number of cells listed, which may be fewer than changed when isFull
+         * @return
+         */
+        public int size() {
+            return size;
+        }
+
+        public int row(int i) {
+            return rows[i];
+        }
+
+        public int col(int i) {
+            return cols[i];
+        }
+
+        public QCSGate before(int i) {
+            return QCSGate.fromOpcode(before[i]);
+        }
+
+        public QCSGate after(int i) {
+            return QCSGate.fromOpcode(after[i]);
+        }
+
+        /**
+         * whether the grid was cleared, resized or loaded in bulk, so any cell may differ
+         * @return
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        /**
+         * whether a phase parameter changed, which changes every U and CU gate
+         * @return
+         */
+        public boolean isPhase() {
+            return phase;
+        }
+
+        /**
+         * leftmost column whose gates changed
+         * @return 0 when isFull, Integer.MAX_VALUE when no gate changed
+         */
+        public int getFirstColumn() {
+            return full ? 0 : firstColumn;
+        }
+    }
 }
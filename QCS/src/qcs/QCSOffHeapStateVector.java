@@ -0,0 +1,332 @@
+package qcs;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * State vector kept outside the java heap in a MemorySegment, so it is not limited to
+ * 2^31 array elements and never scanned or copied by the garbage collector.
+ * Layout is the same as QCSStateVector: interleaved re/im doubles, qubit q is bit q of the index.
+ */
+
+public class QCSOffHeapStateVector implements QCSBackend {
+
+	public static final int MAX_QUBITS = 36;
+
+	// transparent huge pages are 2 MB on x86-64 and aarch64 linux
+	private static final long HUGE_PAGE = 2L << 20;
+	private static final int MADV_HUGEPAGE = 14;
+
+	private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+
+	private final int qubits;
+	private final long dimension;
+	private final Arena arena;
+	private final MemorySegment amps;
+	private final boolean hugePages;
+	// why huge pages couldn't be used, reported once with the next step
+	private String hugePageNote;
+	private ForkJoinPool pool;
+
+	/**
+	 * constructor, starts in the |0...0> state
+	 * @param qubits
+	 * @param hugePages align to 2 MB and ask linux to back the state with huge pages
+	 */
+	public QCSOffHeapStateVector(int qubits, boolean hugePages) {
+		if (qubits < 1 || qubits > MAX_QUBITS) {
+			throw new QCSController.QCSException("Off-heap state vector supports 1 to " + MAX_QUBITS + " qubits, got " + qubits);
+		}
+		this.qubits = qubits;
+		this.dimension = 1L << qubits;
+		this.hugePages = hugePages;
+		long bytes = dimension << 4;
+
+		this.arena = Arena.ofShared();
+		try {
+			this.amps = arena.allocate(bytes, hugePages ? HUGE_PAGE : DOUBLE.byteAlignment());
+		} catch (OutOfMemoryError e) {
+			arena.close();
+			throw new QCSController.QCSException("Not enough memory for " + qubits + " qubits (" + (bytes >> 20) + " MB)");
+		}
+		if (hugePages) hugePageNote = adviseHugePages(amps);
+		reset();
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	@Override
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void reset() {
+		amps.fill((byte) 0);
+		amps.setAtIndex(DOUBLE, 0, 1.0);
+	}
+
+	@Override
+	public QCSBackend copy() {
+		QCSOffHeapStateVector copy = new QCSOffHeapStateVector(qubits, hugePages);
+		copy.amps.copyFrom(amps);
+		copy.pool = pool;
+		copy.hugePageNote = null;
+		return copy;
+	}
+
+	@Override
+	public long sizeBytes() {
+		return amps.byteSize();
+	}
+
+	@Override
+	public double probability(long index) {
+		double re = amps.getAtIndex(DOUBLE, index << 1);
+		double im = amps.getAtIndex(DOUBLE, (index << 1) + 1);
+		return re * re + im * im;
+	}
+
+	@Override
+	public void setAmplitude(long index, double re, double im) {
+		amps.setAtIndex(DOUBLE, index << 1, re);
+		amps.setAtIndex(DOUBLE, (index << 1) + 1, im);
+	}
+
+	@Override
+	public void apply(QCSOperation op) {
+		if (op.kind == QCSGate.Kind.IDENTITY) return;
+		if (op.gate == QCSGate.SWAP) {
+			QCSPairTask.run(pool, dimension >> 1, (from, to) -> applySwap(amps, op.controls[0], op.target, from, to));
+		} else if (op.gate == QCSGate.FUSED2) {
+			QCSPairTask.run(pool, dimension >> 2, (from, to) -> applyMatrix4(amps, op.controls[0], op.target, op.matrix, from, to));
+		} else {
+			long controlMask = op.controlMask();
+			QCSPairTask.run(pool, dimension >> 1, (from, to) -> applyKind(amps, op.kind, op.target, controlMask, op.matrix, from, to));
+		}
+	}
+
+	@Override
+	public String stepReport() {
+		String note = hugePageNote;
+		hugePageNote = null;
+		return note;
+	}
+
+	/**
+	 * releasing the native memory right away instead of waiting for a GC
+	 */
+	@Override
+	public void close() {
+		arena.close();
+	}
+
+	/**
+	 * sending a 2x2 gate to the kernel for its kind
+	 * @param a
+	 * @param kind
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyKind(MemorySegment a, QCSGate.Kind kind, int target, long controlMask, double[] m, long fromPair, long toPair) {
+		switch (kind) {
+		case IDENTITY -> { }
+		case DIAGONAL -> applyDiagonal(a, target, controlMask, m, fromPair, toPair);
+		case PERMUTATION -> applyFlip(a, target, controlMask, fromPair, toPair);
+		default -> applyMatrix(a, target, controlMask, m, fromPair, toPair);
+		}
+	}
+
+	/**
+	 * diagonal gate, a phase on each half of the pair, skipping the |..0..> half when its phase is 1
+	 * @param a
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyDiagonal(MemorySegment a, int target, long controlMask, double[] m, long fromPair, long toPair) {
+		final double d0r = m[0], d0i = m[1], d1r = m[6], d1i = m[7];
+		final boolean phaseOnZero = d0r != 1 || d0i != 0;
+		final long bit = 1L << target;
+		final long low = bit - 1;
+
+		for (long k = fromPair; k < toPair; k++) {
+			long i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			if (phaseOnZero) {
+				long p = i0 << 1;
+				double re = a.getAtIndex(DOUBLE, p), im = a.getAtIndex(DOUBLE, p + 1);
+				a.setAtIndex(DOUBLE, p, d0r * re - d0i * im);
+				a.setAtIndex(DOUBLE, p + 1, d0r * im + d0i * re);
+			}
+			long q = (i0 | bit) << 1;
+			double re = a.getAtIndex(DOUBLE, q), im = a.getAtIndex(DOUBLE, q + 1);
+			a.setAtIndex(DOUBLE, q, d1r * re - d1i * im);
+			a.setAtIndex(DOUBLE, q + 1, d1r * im + d1i * re);
+		}
+	}
+
+	/**
+	 * X on the target where the controls are set, the two halves of each pair exchanged
+	 * @param a
+	 * @param target
+	 * @param controlMask
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyFlip(MemorySegment a, int target, long controlMask, long fromPair, long toPair) {
+		final long bit = 1L << target;
+		final long low = bit - 1;
+
+		for (long k = fromPair; k < toPair; k++) {
+			long i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			long p = i0 << 1;
+			long q = (i0 | bit) << 1;
+			double re = a.getAtIndex(DOUBLE, p), im = a.getAtIndex(DOUBLE, p + 1);
+			a.setAtIndex(DOUBLE, p, a.getAtIndex(DOUBLE, q));
+			a.setAtIndex(DOUBLE, p + 1, a.getAtIndex(DOUBLE, q + 1));
+			a.setAtIndex(DOUBLE, q, re);
+			a.setAtIndex(DOUBLE, q + 1, im);
+		}
+	}
+
+	/**
+	 * 2x2 update of the amplitude pairs that differ only in the target bit
+	 * @param a
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyMatrix(MemorySegment a, int target, long controlMask, double[] m, long fromPair, long toPair) {
+		final double m00r = m[0], m00i = m[1], m01r = m[2], m01i = m[3];
+		final double m10r = m[4], m10i = m[5], m11r = m[6], m11i = m[7];
+		final long bit = 1L << target;
+		final long low = bit - 1;
+
+		for (long k = fromPair; k < toPair; k++) {
+			long i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			long p = i0 << 1;
+			long q = (i0 | bit) << 1;
+
+			double ar = a.getAtIndex(DOUBLE, p), ai = a.getAtIndex(DOUBLE, p + 1);
+			double br = a.getAtIndex(DOUBLE, q), bi = a.getAtIndex(DOUBLE, q + 1);
+
+			a.setAtIndex(DOUBLE, p, m00r * ar - m00i * ai + m01r * br - m01i * bi);
+			a.setAtIndex(DOUBLE, p + 1, m00r * ai + m00i * ar + m01r * bi + m01i * br);
+			a.setAtIndex(DOUBLE, q, m10r * ar - m10i * ai + m11r * br - m11i * bi);
+			a.setAtIndex(DOUBLE, q + 1, m10r * ai + m10i * ar + m11r * bi + m11i * br);
+		}
+	}
+
+	/**
+	 * 4x4 update of the groups of four amplitudes that differ only in bits a and b,
+	 * the matrix rows ordered (bit of a, bit of b)
+	 * @param v
+	 * @param a
+	 * @param b
+	 * @param g
+	 * @param fromQuad
+	 * @param toQuad
+	 */
+	static void applyMatrix4(MemorySegment v, int a, int b, double[] g, long fromQuad, long toQuad) {
+		final long lowLo = (1L << Math.min(a, b)) - 1;
+		final long lowHi = (1L << Math.max(a, b)) - 1;
+		final long bitA = 1L << a;
+		final long bitB = 1L << b;
+		final long[] p = new long[4];
+		final double[] re = new double[4];
+		final double[] im = new double[4];
+
+		for (long k = fromQuad; k < toQuad; k++) {
+			long i = ((k & ~lowLo) << 1) | (k & lowLo);
+			i = ((i & ~lowHi) << 1) | (i & lowHi);
+			p[0] = i << 1;
+			p[1] = (i | bitB) << 1;
+			p[2] = (i | bitA) << 1;
+			p[3] = (i | bitA | bitB) << 1;
+			for (int j = 0; j < 4; j++) {
+				re[j] = v.getAtIndex(DOUBLE, p[j]);
+				im[j] = v.getAtIndex(DOUBLE, p[j] + 1);
+			}
+			for (int r = 0; r < 4; r++) {
+				double sr = 0, si = 0;
+				for (int j = 0; j < 4; j++) {
+					double gr = g[(r * 4 + j) * 2], gi = g[(r * 4 + j) * 2 + 1];
+					sr += gr * re[j] - gi * im[j];
+					si += gr * im[j] + gi * re[j];
+				}
+				v.setAtIndex(DOUBLE, p[r], sr);
+				v.setAtIndex(DOUBLE, p[r] + 1, si);
+			}
+		}
+	}
+
+	/**
+	 * exchanging the amplitudes of |..1..0..> and |..0..1..> for qubits a and b
+	 * @param v
+	 * @param a
+	 * @param b
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applySwap(MemorySegment v, int a, int b, long fromPair, long toPair) {
+		final long hiBit = 1L << Math.max(a, b);
+		final long bit = 1L << Math.min(a, b);
+		final long low = bit - 1;
+
+		for (long k = fromPair; k < toPair; k++) {
+			long i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & hiBit) == 0) continue;
+			long p = ((i0 ^ hiBit) | bit) << 1;
+			long q = i0 << 1;
+
+			double re = v.getAtIndex(DOUBLE, p), im = v.getAtIndex(DOUBLE, p + 1);
+			v.setAtIndex(DOUBLE, p, v.getAtIndex(DOUBLE, q));
+			v.setAtIndex(DOUBLE, p + 1, v.getAtIndex(DOUBLE, q + 1));
+			v.setAtIndex(DOUBLE, q, re);
+			v.setAtIndex(DOUBLE, q + 1, im);
+		}
+	}
+
+	/**
+	 * madvise(MADV_HUGEPAGE) through the native linker, best effort only
+	 * @param segment
+	 * @return why the advice wasn't taken, null when it was
+	 */
+	private static String adviseHugePages(MemorySegment segment) {
+		try {
+			Linker linker = Linker.nativeLinker();
+			Optional<MemorySegment> madvise = linker.defaultLookup().find("madvise");
+			if (madvise.isEmpty()) return "Huge pages not available, using normal pages";
+			MethodHandle handle = linker.downcallHandle(madvise.get(),
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT));
+			int result = (int) handle.invokeExact(segment, segment.byteSize(), MADV_HUGEPAGE);
+			return (result != 0) ? "madvise(MADV_HUGEPAGE) failed, using normal pages" : null;
+		} catch (Throwable e) {
+			return "Huge pages not available: " + e.getMessage();
+		}
+	}
+}
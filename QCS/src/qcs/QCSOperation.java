@@ -0,0 +1,56 @@
+package qcs;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * One gate of a grid column resolved to the qubits it acts on
+ */
+
+public final class QCSOperation {
+
+	final QCSGate gate;
+	final int target;
+	final int[] controls;
+	final double[] matrix;
+	final QCSGate.Kind kind;
+
+	/**
+	 * constructor, for SWAP the target is the second swapped qubit and controls holds the first
+	 * @param gate
+	 * @param target
+	 * @param controls
+	 * @param matrix
+	 */
+	public QCSOperation(QCSGate gate, int target, int[] controls, double[] matrix) {
+		this.gate = gate;
+		this.target = target;
+		this.controls = controls;
+		this.matrix = matrix;
+		this.kind = (matrix != null && matrix.length == 8) ? QCSGate.classify(matrix) : gate.kind();
+	}
+
+	/**
+	 * bit mask of the control qubits
+	 * @return
+	 */
+	public long controlMask() {
+		long mask = 0;
+		if (gate == QCSGate.SWAP) return mask;
+		for (int c : controls) {
+			mask |= 1L << c;
+		}
+		return mask;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(gate.name()).append("(");
+		for (int c : controls) {
+			text.append("q").append(c).append(", ");
+		}
+		return text.append("q").append(target).append(")").toString();
+	}
+}
@@ -0,0 +1,64 @@
+package qcs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Fork/join task splitting the amplitude pairs of one gate in halves down to CHUNK_PAIRS.
+ * Every pair is written by exactly one task, so the result is the same for any thread count.
+ */
+
+final class QCSPairTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	// pairs one worker updates in a row, 2^13 pairs touch 256 KB which stays in a core's L2
+	static final long CHUNK_PAIRS = 1 << 13;
+
+	/**
+	 * Interface for a kernel updating the pairs fromPair to toPair
+	 */
+	@FunctionalInterface
+	interface Range {
+		void apply(long fromPair, long toPair);
+	}
+
+	private final Range kernel;
+	private final long fromPair;
+	private final long toPair;
+
+	private QCSPairTask(Range kernel, long fromPair, long toPair) {
+		this.kernel = kernel;
+		this.fromPair = fromPair;
+		this.toPair = toPair;
+	}
+
+	/**
+	 * running a kernel over all pairs, in parallel when a pool is given and the state is big enough
+	 * @param pool
+	 * @param pairs
+	 * @param kernel
+	 */
+	static void run(ForkJoinPool pool, long pairs, Range kernel) {
+		if (pool == null || pool.getParallelism() < 2 || pairs <= CHUNK_PAIRS) {
+			kernel.apply(0, pairs);
+		} else {
+			pool.invoke(new QCSPairTask(kernel, 0, pairs));
+		}
+	}
+
+	@Override
+	protected void compute() {
+		if (toPair - fromPair <= CHUNK_PAIRS) {
+			kernel.apply(fromPair, toPair);
+			return;
+		}
+		long mid = (fromPair + toPair) >>> 1;
+		invokeAll(new QCSPairTask(kernel, fromPair, mid), new QCSPairTask(kernel, mid, toPair));
+	}
+}
@@ -0,0 +1,508 @@
+package qcs;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Measurement sampler for a finished circuit. A backend with its own sampler, like the stabilizer
+ * tableau, draws every shot itself and can measure more than 63 qubits. Otherwise a small support is read once into a Walker alias
+ * table (Vose's construction), after which every shot costs one random index and one random double.
+ * A large support, or a dense state too big to list, gets prefix sums instead, over its outcomes
+ * or over blocks of amplitudes, and each shot is a binary search plus a scan of at most one block.
+ * Shots are split over the pool, each task with its own SplittableRandom split off in a fixed
+ * order, so the counts for a seed don't depend on the number of threads.
+ */
+
+public class QCSShotSampler {
+
+	// supports up to this size get an alias table, about 20 bytes each
+	private static final int ALIAS_OUTCOMES = 1 << 16;
+	// most prefix sums kept for a dense state, larger states get longer blocks
+	private static final int MAX_BLOCKS = 1 << 22;
+	// amplitudes per block of a dense state at least
+	private static final int MIN_BLOCK = 64;
+
+	// shots sampled by one task before it splits no further
+	private static final long CHUNK_SHOTS = 1 << 16;
+	// shots, blocks or listed outcomes between two checks for a cancel
+	private static final int CHECK_EVERY = 1 << 10;
+
+	private final int qubits;
+	private final BooleanSupplier cancelled;
+	// backend's own sampler, null when the shots come from its probabilities
+	private final QCSBackend.Sampler sampler;
+	// dense state whose blocks are scanned, null when the outcomes were listed
+	private final QCSBackend dense;
+	private final int block;
+	// listed outcomes, in the alias table or in prefix sum order
+	private long[] outcomes;
+	private double[] accept;
+	private int[] alias;
+	// running totals of the listed outcomes, or of the dense blocks, null with an alias table
+	private double[] prefix;
+
+	/**
+	 * constructor, builds the alias table or the prefix sums from the state's probabilities
+	 * @param state
+	 * @param pool null to sum the blocks of a dense state on the calling thread
+	 * @param cancelled checked while building and sampling, stops both with a QCSException
+	 */
+	public QCSShotSampler(QCSBackend state, ForkJoinPool pool, BooleanSupplier cancelled) {
+		this.qubits = state.getQubits();
+		this.cancelled = cancelled;
+		this.sampler = state.sampler();
+		if (sampler != null) {
+			this.dense = null;
+			this.block = 0;
+			return;
+		}
+
+		boolean mapped = state instanceof QCSMappedStateVector;
+		if ((QCSTopK.isDense(state) || mapped) && (1L << qubits) > ALIAS_OUTCOMES) {
+			long dimension = 1L << qubits;
+			this.dense = state;
+			this.block = (int) Math.max(MIN_BLOCK, dimension / MAX_BLOCKS);
+			this.prefix = new double[(int) (dimension / block)];
+			double[] sums = prefix;
+			if (mapped) {
+				// the spill file is summed a window at a time instead of one read per amplitude
+				QCSMappedStateVector spilled = (QCSMappedStateVector) state;
+				QCSPairTask.run(pool, sums.length, (from, to) -> {
+					for (long b = from; b < to; b += CHECK_EVERY) {
+						QCSEngine.checkCancelled(cancelled);
+						spilled.sumBlocks(block, b, Math.min(b + CHECK_EVERY, to), sums);
+					}
+				});
+			} else {
+				QCSPairTask.run(pool, sums.length, (from, to) -> {
+					for (long b = from; b < to; b++) {
+						if ((b - from) % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+						double sum = 0;
+						for (long i = b * block; i < (b + 1) * block; i++) {
+							sum += state.probability(i);
+						}
+						sums[(int) b] = sum;
+					}
+				});
+			}
+			for (int b = 1; b < prefix.length; b++) {
+				prefix[b] += prefix[b - 1];
+			}
+			if (!(prefix[prefix.length - 1] > 0)) {
+				throw new QCSController.QCSException("State has no outcome to sample.");
+			}
+			return;
+		}
+
+		this.dense = null;
+		this.block = 0;
+		Collector collected = new Collector(cancelled);
+		state.forEachProbability(collected);
+		int n = collected.size;
+		if (n == 0 || collected.total <= 0) {
+			throw new QCSController.QCSException("State has no outcome to sample.");
+		}
+		this.outcomes = Arrays.copyOf(collected.index, n);
+
+		if (n > ALIAS_OUTCOMES) {
+			prefix = Arrays.copyOf(collected.weight, n);
+			for (int i = 1; i < n; i++) {
+				prefix[i] += prefix[i - 1];
+			}
+			return;
+		}
+
+		this.accept = new double[n];
+		this.alias = new int[n];
+
+		// Vose: scale to mean 1, then pair every light column with a heavy one
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0, largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = collected.weight[i] * n / collected.total;
+			if (scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			int light = small[--smallCount];
+			int heavy = large[--largeCount];
+			accept[light] = scaled[light];
+			alias[light] = heavy;
+			scaled[heavy] -= 1.0 - scaled[light];
+			if (scaled[heavy] < 1.0) {
+				small[smallCount++] = heavy;
+			} else {
+				large[largeCount++] = heavy;
+			}
+		}
+		// what is left is 1 up to rounding
+		while (largeCount > 0) {
+			int i = large[--largeCount];
+			accept[i] = 1.0;
+			alias[i] = i;
+		}
+		while (smallCount > 0) {
+			int i = small[--smallCount];
+			accept[i] = 1.0;
+			alias[i] = i;
+		}
+	}
+
+	/**
+	 * measuring the state the given number of times
+	 * @param shots
+	 * @param seed
+	 * @param pool null to sample on the calling thread
+	 * @return
+	 */
+	public Counts sample(long shots, long seed, ForkJoinPool pool) {
+		if (shots < 1) {
+			throw new QCSController.QCSException("Shot count must be a positive integer.");
+		}
+		ShotTask task = new ShotTask(0, shots, new SplittableRandom(seed));
+		return (pool == null) ? task.compute() : pool.invoke(task);
+	}
+
+	/**
+	 * one shot
+	 * @param random
+	 * @param bits words the backend's sampler writes the shot into
+	 * @param probabilities room for one block of a spilled state, null for any other state
+	 * @return the basis index measured
+	 */
+	private long draw(SplittableRandom random, long[] bits, double[] probabilities) {
+		if (sampler != null) {
+			sampler.draw(random, bits);
+			return bits[0];
+		}
+		if (prefix == null) {
+			int i = random.nextInt(accept.length);
+			return outcomes[(random.nextDouble() < accept[i]) ? i : alias[i]];
+		}
+		double u = random.nextDouble() * prefix[prefix.length - 1];
+		int found = search(u);
+		if (dense == null) return outcomes[found];
+
+		// the shot lands in this block, walking it finds the amplitude
+		double rest = u - ((found > 0) ? prefix[found - 1] : 0);
+		long first = (long) found * block;
+		if (probabilities != null) ((QCSMappedStateVector) dense).probabilities(first, probabilities);
+		long last = -1;
+		for (long i = first; i < first + block; i++) {
+			double p = (probabilities != null) ? probabilities[(int) (i - first)] : dense.probability(i);
+			if (p <= 0) continue;
+			last = i;
+			rest -= p;
+			if (rest < 0) return i;
+		}
+		// rounding left a sliver past the block's last outcome
+		return last;
+	}
+
+	/**
+	 * first prefix sum above u
+	 * @param u
+	 * @return
+	 */
+	private int search(double u) {
+		int low = 0, high = prefix.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (prefix[mid] > u) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Inner class for the histogram of a sampling run, one entry per distinct outcome seen. Past 63
+	 * qubits an outcome doesn't fit in a basis index, so it is kept as a bit set and numbered by
+	 * its place in the histogram instead.
+	 */
+	public static final class Counts {
+
+		final int qubits;
+		final long shots;
+		final long[] outcomes;
+		final long[] counts;
+		// the outcomes' bits when there are too many qubits for a basis index, otherwise null
+		final long[][] bits;
+
+		Counts(int qubits, long shots, long[] outcomes, long[] counts) {
+			this.qubits = qubits;
+			this.shots = shots;
+			this.outcomes = outcomes;
+			this.counts = counts;
+			this.bits = null;
+		}
+
+		Counts(int qubits, long shots, long[][] bits, long[] counts) {
+			this.qubits = qubits;
+			this.shots = shots;
+			this.outcomes = new long[bits.length];
+			this.counts = counts;
+			this.bits = bits;
+			for (int i = 0; i < bits.length; i++) {
+				outcomes[i] = i;
+			}
+		}
+
+		/**
+		 * number of distinct outcomes seen
+		 * @return
+		 */
+		public int size() {
+			return outcomes.length;
+		}
+
+		/**
+		 * basis index of the i-th outcome, or i itself when the outcomes are kept as bit sets
+		 * @param i
+		 * @return
+		 */
+		public long outcome(int i) {
+			return outcomes[i];
+		}
+
+		/**
+		 * times the i-th outcome was measured
+		 * @param i
+		 * @return
+		 */
+		public long count(int i) {
+			return counts[i];
+		}
+
+		/**
+		 * total number of shots
+		 * @return
+		 */
+		public long getShots() {
+			return shots;
+		}
+
+		/**
+		 * outcome written with the highest qubit first, as Qiskit prints it
+		 * @param i
+		 * @return
+		 */
+		public String bitstring(int i) {
+			return (bits != null) ? QCSShotSampler.bitstring(bits[i], qubits) : QCSShotSampler.bitstring(outcomes[i], qubits);
+		}
+
+		/**
+		 * order of the i-th outcome against the j-th outcome of another histogram
+		 * @param i
+		 * @param other
+		 * @param j
+		 * @return
+		 */
+		private int compare(int i, Counts other, int j) {
+			return (bits != null) ? compareBits(bits[i], other.bits[j]) : Long.compare(outcomes[i], other.outcomes[j]);
+		}
+	}
+
+	/**
+	 * basis index written with the highest qubit first
+	 * @param index
+	 * @param qubits
+	 * @return
+	 */
+	public static String bitstring(long index, int qubits) {
+		char[] bits = new char[qubits];
+		for (int q = 0; q < qubits; q++) {
+			bits[qubits - 1 - q] = ((index >>> q) & 1) == 0 ? '0' : '1';
+		}
+		return new String(bits);
+	}
+
+	/**
+	 * outcome kept as a bit set, written with the highest qubit first
+	 * @param bits
+	 * @param qubits
+	 * @return
+	 */
+	public static String bitstring(long[] bits, int qubits) {
+		char[] out = new char[qubits];
+		for (int q = 0; q < qubits; q++) {
+			out[qubits - 1 - q] = ((bits[q >>> 6] >>> q) & 1) == 0 ? '0' : '1';
+		}
+		return new String(out);
+	}
+
+	/**
+	 * ordering bit sets as the numbers they would be, highest word first
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static int compareBits(long[] a, long[] b) {
+		for (int w = a.length - 1; w >= 0; w--) {
+			if (a[w] != b[w]) return Long.compareUnsigned(a[w], b[w]);
+		}
+		return 0;
+	}
+
+	/**
+	 * Inner class gathering the non-zero probabilities of a state into growing arrays
+	 */
+	private static final class Collector implements QCSBackend.ProbabilityVisitor {
+
+		private final BooleanSupplier cancelled;
+		long[] index = new long[1024];
+		double[] weight = new double[1024];
+		int size = 0;
+		double total = 0;
+
+		Collector(BooleanSupplier cancelled) {
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		public void visit(long i, double probability) {
+			if (size % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+			if (size == index.length) {
+				index = Arrays.copyOf(index, size << 1);
+				weight = Arrays.copyOf(weight, size << 1);
+			}
+			index[size] = i;
+			weight[size] = probability;
+			size++;
+			total += probability;
+		}
+	}
+
+	/**
+	 * Inner class for a range of shots. Each leaf sorts the outcomes it drew and counts runs,
+	 * and the halves are merged back in order, so memory follows the shots and not the 2^n outcomes.
+	 */
+	private final class ShotTask extends RecursiveTask<Counts> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+		private final SplittableRandom random;
+
+		ShotTask(long from, long to, SplittableRandom random) {
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
+
+		@Override
+		protected Counts compute() {
+			if (to - from > CHUNK_SHOTS) {
+				long mid = (from + to) >>> 1;
+				ShotTask left = new ShotTask(from, mid, random.split());
+				ShotTask right = new ShotTask(mid, to, random);
+				if (getPool() == null) {
+					return merge(left.compute(), right.compute());
+				}
+				left.fork();
+				Counts high = right.compute();
+				return merge(left.join(), high);
+			}
+
+			long[] bits = new long[(qubits + 63) >>> 6];
+			if (qubits > 63) return wideLeaf(bits.length);
+
+			long[] drawn = new long[(int) (to - from)];
+			double[] probabilities = (dense instanceof QCSMappedStateVector) ? new double[block] : null;
+			for (int i = 0; i < drawn.length; i++) {
+				if (i % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+				drawn[i] = draw(random, bits, probabilities);
+			}
+			Arrays.sort(drawn);
+
+			int distinct = 0;
+			for (int i = 0; i < drawn.length; i++) {
+				if (i == 0 || drawn[i] != drawn[i - 1]) distinct++;
+			}
+			long[] keys = new long[distinct];
+			long[] counts = new long[distinct];
+			int k = -1;
+			for (int i = 0; i < drawn.length; i++) {
+				if (i == 0 || drawn[i] != drawn[i - 1]) keys[++k] = drawn[i];
+				counts[k]++;
+			}
+			return new Counts(qubits, to - from, keys, counts);
+		}
+
+		/**
+		 * the leaf's shots as bit sets, only the backend's sampler can draw them
+		 * @param words
+		 * @return
+		 */
+		private Counts wideLeaf(int words) {
+			long[][] drawn = new long[(int) (to - from)][];
+			for (int i = 0; i < drawn.length; i++) {
+				if (i % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+				drawn[i] = new long[words];
+				sampler.draw(random, drawn[i]);
+			}
+			Arrays.sort(drawn, QCSShotSampler::compareBits);
+
+			int distinct = 0;
+			for (int i = 0; i < drawn.length; i++) {
+				if (i == 0 || compareBits(drawn[i], drawn[i - 1]) != 0) distinct++;
+			}
+			long[][] keys = new long[distinct][];
+			long[] counts = new long[distinct];
+			int k = -1;
+			for (int i = 0; i < drawn.length; i++) {
+				if (i == 0 || compareBits(drawn[i], drawn[i - 1]) != 0) keys[++k] = drawn[i];
+				counts[k]++;
+			}
+			return new Counts(qubits, to - from, keys, counts);
+		}
+
+		/**
+		 * merging two sorted histograms
+		 * @param a
+		 * @param b
+		 * @return
+		 */
+		private Counts merge(Counts a, Counts b) {
+			int size = a.size() + b.size();
+			long[] keys = new long[size];
+			long[][] bits = (a.bits != null) ? new long[size][] : null;
+			long[] counts = new long[size];
+			int i = 0, j = 0, k = 0;
+			while (i < a.size() || j < b.size()) {
+				int order = (j == b.size()) ? -1 : (i == a.size()) ? 1 : a.compare(i, b, j);
+				if (order <= 0) {
+					keys[k] = a.outcomes[i];
+					if (bits != null) bits[k] = a.bits[i];
+					counts[k] = a.counts[i++];
+					if (order == 0) counts[k] += b.counts[j++];
+				} else {
+					keys[k] = b.outcomes[j];
+					if (bits != null) bits[k] = b.bits[j];
+					counts[k] = b.counts[j++];
+				}
+				k++;
+			}
+			if (bits != null) {
+				return new Counts(qubits, a.shots + b.shots, Arrays.copyOf(bits, k), Arrays.copyOf(counts, k));
+			}
+			return new Counts(qubits, a.shots + b.shots, Arrays.copyOf(keys, k), Arrays.copyOf(counts, k));
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package qcs;
+
+import java.util.Arrays;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * State vector storing only the non-zero amplitudes, in an open-addressing map from basis index
+ * to complex value. Permutation-heavy circuits (X, CX, CCX, SWAP with few H) only ever touch a
+ * handful of basis states, so memory follows the number of active states instead of 2^n.
+ */
+
+public class QCSSparseStateVector implements QCSBackend {
+
+	public static final int MAX_QUBITS = 63;
+
+	// amplitudes this small are dropped instead of stored
+	private static final double EPSILON = 1e-30;
+
+	private final int qubits;
+	private AmplitudeMap current = new AmplitudeMap(16);
+	private AmplitudeMap next = new AmplitudeMap(16);
+	// the fill is reported once, when the engine picks this backend, the switch away reports its own
+	private boolean reported = false;
+
+	/**
+	 * constructor, starts in the |0...0> state
+	 * @param qubits
+	 */
+	public QCSSparseStateVector(int qubits) {
+		if (qubits < 1 || qubits > MAX_QUBITS) {
+			throw new QCSController.QCSException("Sparse state vector supports 1 to " + MAX_QUBITS + " qubits, got " + qubits);
+		}
+		this.qubits = qubits;
+		reset();
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	@Override
+	public void reset() {
+		current.clear();
+		current.put(0, 1.0, 0.0);
+	}
+
+	@Override
+	public QCSBackend copy() {
+		QCSSparseStateVector copy = new QCSSparseStateVector(qubits);
+		copy.current = current.copy();
+		copy.reported = true;
+		return copy;
+	}
+
+	@Override
+	public long sizeBytes() {
+		return (long) current.keys.length * 24;
+	}
+
+	@Override
+	public double probability(long index) {
+		int slot = current.find(index);
+		if (slot < 0) return 0.0;
+		return current.re[slot] * current.re[slot] + current.im[slot] * current.im[slot];
+	}
+
+	/**
+	 * only the stored amplitudes are visited
+	 * @param visitor
+	 */
+	@Override
+	public void forEachProbability(ProbabilityVisitor visitor) {
+		AmplitudeMap map = current;
+		for (int slot = 0; slot < map.keys.length; slot++) {
+			if (map.keys[slot] != AmplitudeMap.EMPTY) {
+				visitor.visit(map.keys[slot], map.re[slot] * map.re[slot] + map.im[slot] * map.im[slot]);
+			}
+		}
+	}
+
+	/**
+	 * number of stored amplitudes
+	 * @return
+	 */
+	public int getNonZeroCount() {
+		return current.size;
+	}
+
+	/**
+	 * stored amplitudes over 2^n
+	 * @return
+	 */
+	public double fillRatio() {
+		return Math.scalb((double) current.size, -qubits);
+	}
+
+	/**
+	 * writing every stored amplitude into a dense backend that starts out all zero except index 0
+	 * @param dense
+	 */
+	public void copyTo(QCSBackend dense) {
+		dense.setAmplitude(0, 0.0, 0.0);
+		AmplitudeMap map = current;
+		for (int slot = 0; slot < map.keys.length; slot++) {
+			if (map.keys[slot] != AmplitudeMap.EMPTY) {
+				dense.setAmplitude(map.keys[slot], map.re[slot], map.im[slot]);
+			}
+		}
+	}
+
+	/**
+	 * the fill after the first step on this backend, nothing after that
+	 * @return
+	 */
+	@Override
+	public String stepReport() {
+		if (reported) return null;
+		reported = true;
+		return String.format("Sparse state: %d non-zero amplitudes (%.4f%% of 2^%d)",
+				current.size, fillRatio() * 100, qubits);
+	}
+
+	/**
+	 * rebuilding the map from the old one, each stored amplitude visited once.
+	 * Diagonal gates change the values in place since no amplitude moves.
+	 * @param op
+	 */
+	@Override
+	public void apply(QCSOperation op) {
+		if (op.gate == QCSGate.FUSED2) {
+			throw new QCSController.QCSException("Sparse state vector can't apply 4x4 fused gates");
+		}
+		if (op.kind == QCSGate.Kind.IDENTITY) return;
+		if (op.kind == QCSGate.Kind.DIAGONAL) {
+			applyDiagonal(current, op.target, op.controlMask(), op.matrix);
+			return;
+		}
+		AmplitudeMap from = current;
+		AmplitudeMap to = next;
+		to.clear();
+		to.ensureCapacity(from.size * 2);
+
+		if (op.gate == QCSGate.SWAP) {
+			int a = op.controls[0];
+			int b = op.target;
+			for (int slot = 0; slot < from.keys.length; slot++) {
+				long key = from.keys[slot];
+				if (key == AmplitudeMap.EMPTY) continue;
+				long differ = ((key >>> a) ^ (key >>> b)) & 1;
+				long swapped = key ^ (differ << a) ^ (differ << b);
+				to.put(swapped, from.re[slot], from.im[slot]);
+			}
+		} else if (op.kind == QCSGate.Kind.PERMUTATION) {
+			// X only renames basis states, no partner lookups and no arithmetic
+			long bit = 1L << op.target;
+			long controlMask = op.controlMask();
+			for (int slot = 0; slot < from.keys.length; slot++) {
+				long key = from.keys[slot];
+				if (key == AmplitudeMap.EMPTY) continue;
+				long moved = ((key & controlMask) == controlMask) ? key ^ bit : key;
+				to.put(moved, from.re[slot], from.im[slot]);
+			}
+		} else {
+			applyMatrix(from, to, op.target, op.controlMask(), op.matrix);
+		}
+
+		current = to;
+		next = from;
+	}
+
+	private void applyDiagonal(AmplitudeMap map, int target, long controlMask, double[] m) {
+		final long bit = 1L << target;
+		for (int slot = 0; slot < map.keys.length; slot++) {
+			long key = map.keys[slot];
+			if (key == AmplitudeMap.EMPTY || (key & controlMask) != controlMask) continue;
+			int d = ((key & bit) == 0) ? 0 : 6;
+			double re = map.re[slot], im = map.im[slot];
+			map.re[slot] = m[d] * re - m[d + 1] * im;
+			map.im[slot] = m[d] * im + m[d + 1] * re;
+		}
+	}
+
+	private void applyMatrix(AmplitudeMap from, AmplitudeMap to, int target, long controlMask, double[] m) {
+		final double m00r = m[0], m00i = m[1], m01r = m[2], m01i = m[3];
+		final double m10r = m[4], m10i = m[5], m11r = m[6], m11i = m[7];
+		final long bit = 1L << target;
+
+		for (int slot = 0; slot < from.keys.length; slot++) {
+			long key = from.keys[slot];
+			if (key == AmplitudeMap.EMPTY) continue;
+			if ((key & controlMask) != controlMask) {
+				to.put(key, from.re[slot], from.im[slot]);
+				continue;
+			}
+
+			// each pair is handled from its |..0..> half, or from |..1..> when the other half is zero
+			long i0 = key & ~bit;
+			double ar, ai, br, bi;
+			if ((key & bit) == 0) {
+				ar = from.re[slot];
+				ai = from.im[slot];
+				int partner = from.find(key | bit);
+				br = (partner < 0) ? 0.0 : from.re[partner];
+				bi = (partner < 0) ? 0.0 : from.im[partner];
+			} else {
+				if (from.find(i0) >= 0) continue;
+				ar = 0.0;
+				ai = 0.0;
+				br = from.re[slot];
+				bi = from.im[slot];
+			}
+
+			to.put(i0, m00r * ar - m00i * ai + m01r * br - m01i * bi, m00r * ai + m00i * ar + m01r * bi + m01i * br);
+			to.put(i0 | bit, m10r * ar - m10i * ai + m11r * br - m11i * bi, m10r * ai + m10i * ar + m11r * bi + m11i * br);
+		}
+	}
+
+	/**
+	 * Inner class for the open-addressing map from basis index to amplitude, linear probing
+	 * over parallel primitive arrays with -1 marking a free slot.
+	 */
+	private static final class AmplitudeMap {
+
+		static final long EMPTY = -1L;
+
+		long[] keys;
+		double[] re;
+		double[] im;
+		int size;
+		private int mask;
+
+		AmplitudeMap(int capacity) {
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			re = new double[capacity];
+			im = new double[capacity];
+			Arrays.fill(keys, EMPTY);
+			mask = capacity - 1;
+			size = 0;
+		}
+
+		AmplitudeMap copy() {
+			AmplitudeMap copy = new AmplitudeMap(keys.length);
+			System.arraycopy(keys, 0, copy.keys, 0, keys.length);
+			System.arraycopy(re, 0, copy.re, 0, re.length);
+			System.arraycopy(im, 0, copy.im, 0, im.length);
+			copy.size = size;
+			return copy;
+		}
+
+		void clear() {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+
+		/**
+		 * making room for the given number of entries at a load factor of one half
+		 * @param entries
+		 */
+		void ensureCapacity(int entries) {
+			int needed = Integer.highestOneBit(Math.max(16, entries * 2 - 1)) << 1;
+			if (needed > keys.length) allocate(needed);
+		}
+
+		private int slotOf(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		int find(long key) {
+			for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+				long k = keys[slot];
+				if (k == key) return slot;
+				if (k == EMPTY) return -1;
+			}
+		}
+
+		/**
+		 * storing an amplitude, skipping ones that are zero
+		 * @param key
+		 * @param r
+		 * @param i
+		 */
+		void put(long key, double r, double i) {
+			if (r * r + i * i < EPSILON) return;
+			if ((size + 1) * 2 > keys.length) grow();
+			int slot = slotOf(key);
+			while (keys[slot] != EMPTY && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == EMPTY) size++;
+			keys[slot] = key;
+			re[slot] = r;
+			im[slot] = i;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			double[] oldRe = re;
+			double[] oldIm = im;
+			allocate(oldKeys.length << 1);
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldKeys[slot] != EMPTY) put(oldKeys[slot], oldRe[slot], oldIm[slot]);
+			}
+		}
+	}
+}
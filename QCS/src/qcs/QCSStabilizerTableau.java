@@ -0,0 +1,623 @@
+package qcs;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Stabilizer backend for circuits made only of Clifford gates (I, X, Y, Z, H, S, CX, SWAP).
+ * Follows Aaronson and Gottesman's CHP tableau: rows 0 to n-1 are destabilizers, rows n to 2n-1
+ * stabilizers and row 2n is scratch space. The tableau is stored by qubit: for each qubit a long[]
+ * bit set over the rows for its x bits and one for its z bits, plus one bit set of row signs.
+ * A gate then only touches its own qubits' bit sets and updates 64 rows per XOR.
+ */
+
+public class QCSStabilizerTableau implements QCSBackend {
+
+	private final int qubits;
+	private final int scratch;
+	private final int words;
+	private final long[] x;
+	private final long[] z;
+	private final long[] r;
+
+	/**
+	 * constructor, starts in the |0...0> state
+	 * @param qubits
+	 */
+	public QCSStabilizerTableau(int qubits) {
+		if (qubits < 1) {
+			throw new QCSController.QCSException("Stabilizer backend needs at least 1 qubit, got " + qubits);
+		}
+		this.qubits = qubits;
+		this.scratch = 2 * qubits;
+		this.words = (2 * qubits + 1 + 63) >>> 6;
+		this.x = new long[qubits * words];
+		this.z = new long[qubits * words];
+		this.r = new long[words];
+		reset();
+	}
+
+	/**
+	 * copy constructor, used to measure without disturbing the state and for checkpoints
+	 * @param other
+	 */
+	private QCSStabilizerTableau(QCSStabilizerTableau other) {
+		this.qubits = other.qubits;
+		this.scratch = other.scratch;
+		this.words = other.words;
+		this.x = other.x.clone();
+		this.z = other.z.clone();
+		this.r = other.r.clone();
+	}
+
+	/**
+	 * checking whether a gate can be simulated on the tableau
+	 * @param gate
+	 * @return
+	 */
+	public static boolean supports(QCSGate gate) {
+		return switch (gate) {
+		case I, X, Y, Z, H, S, CX, SWAP, BARRIER -> true;
+		default -> false;
+		};
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	/**
+	 * destabilizer i is X_i and stabilizer i is Z_i
+	 */
+	@Override
+	public void reset() {
+		Arrays.fill(x, 0L);
+		Arrays.fill(z, 0L);
+		Arrays.fill(r, 0L);
+		for (int q = 0; q < qubits; q++) {
+			setBit(x, q, q, 1);
+			setBit(z, q, q + qubits, 1);
+		}
+	}
+
+	@Override
+	public void apply(QCSOperation op) {
+		int t = op.target;
+		switch (op.gate) {
+		case I, BARRIER -> { }
+		case X -> pauli(t, false, true);
+		case Z -> pauli(t, true, false);
+		case Y -> pauli(t, true, true);
+		case H -> hadamard(t);
+		case S -> phase(t);
+		case CX -> cnot(op.controls[0], t);
+		case SWAP -> swap(op.controls[0], t);
+		default -> throw new QCSController.QCSException("Stabilizer backend can't apply " + op.gate + " gates");
+		}
+	}
+
+	@Override
+	public QCSBackend copy() {
+		return new QCSStabilizerTableau(this);
+	}
+
+	@Override
+	public long sizeBytes() {
+		return (long) (x.length + z.length + r.length) << 3;
+	}
+
+	/**
+	 * probability of a basis state, found by measuring a copy qubit by qubit and forcing each outcome
+	 * @param index
+	 * @return
+	 */
+	@Override
+	public double probability(long index) {
+		if (qubits > 63) {
+			throw new QCSController.QCSException("Basis index can't address " + qubits + " qubits");
+		}
+		QCSStabilizerTableau copy = new QCSStabilizerTableau(this);
+		double p = 1.0;
+		for (int q = 0; q < qubits; q++) {
+			int wanted = (int) (index >>> q) & 1;
+			int outcome = copy.measure(q, wanted);
+			if (outcome < 0) {
+				p *= 0.5;
+			} else if (outcome != wanted) {
+				return 0.0;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * listing the outcomes by measuring qubit by qubit and branching on every random result,
+	 * so only the 2^k basis states of the support are visited
+	 * @param visitor
+	 */
+	@Override
+	public void forEachProbability(ProbabilityVisitor visitor) {
+		if (qubits > 63) {
+			throw new QCSController.QCSException("Basis index can't address " + qubits + " qubits");
+		}
+		branch(new QCSStabilizerTableau(this), 0, 0L, 1.0, visitor);
+	}
+
+	private static void branch(QCSStabilizerTableau t, int q, long index, double p, ProbabilityVisitor visitor) {
+		for (; q < t.qubits; q++) {
+			if (t.isRandom(q)) {
+				QCSStabilizerTableau one = new QCSStabilizerTableau(t);
+				one.measure(q, 1);
+				t.measure(q, 0);
+				p *= 0.5;
+				branch(one, q + 1, index | (1L << q), p, visitor);
+			} else if (t.measure(q, 0) == 1) {
+				index |= 1L << q;
+			}
+		}
+		visitor.visit(index, p);
+	}
+
+	/**
+	 * sampler measuring every qubit of the state, as measuring qubit by qubit on a copy of the
+	 * tableau would but without copying it for every shot
+	 * @return
+	 */
+	@Override
+	public Sampler sampler() {
+		return support()::draw;
+	}
+
+	/**
+	 * outcomes of measuring every qubit, worked out from the stabilizer rows
+	 * @return
+	 */
+	Support support() {
+		return new Support(this);
+	}
+
+	/**
+	 * Class for the outcomes of measuring every qubit of a stabilizer state. Those outcomes are
+	 * equally likely and are the solutions of the stabilizers made only of Z, read as parity checks.
+	 * The stabilizers are brought to that form by Gaussian elimination on their x bits, then the
+	 * checks are reduced so each one sets a single qubit from the free ones. A shot then picks the
+	 * free qubits at random and solves for the rest, in O(n^2 / 64).
+	 */
+	static final class Support {
+
+		private final int qubits;
+		private final int words;
+		private final int free;
+		// qubits that are set by the others
+		private final long[] fixed;
+		// check i sets qubit pivots[i] to signs[i] plus the parity of checks[i] over the free qubits
+		private final int[] pivots;
+		private final long[][] checks;
+		private final int[] signs;
+
+		private Support(QCSStabilizerTableau t) {
+			int n = t.qubits;
+			qubits = n;
+			words = (n + 63) >>> 6;
+
+			// stabilizer rows by row instead of by qubit
+			long[][] rx = new long[n][words];
+			long[][] rz = new long[n][words];
+			int[] rr = new int[n];
+			for (int q = 0; q < n; q++) {
+				long mask = 1L << q;
+				for (int i = 0; i < n; i++) {
+					if (t.bit(t.x, q, n + i) != 0) rx[i][q >>> 6] |= mask;
+					if (t.bit(t.z, q, n + i) != 0) rz[i][q >>> 6] |= mask;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				rr[i] = t.bit(t.r, 0, n + i);
+			}
+
+			// clearing the x bits column by column, the rows left past rank are made only of Z
+			int rank = 0;
+			for (int q = 0; q < n && rank < n; q++) {
+				int w = q >>> 6;
+				long mask = 1L << q;
+				int pivot = rank;
+				while (pivot < n && (rx[pivot][w] & mask) == 0) pivot++;
+				if (pivot == n) continue;
+				swapRows(rx, rz, rr, rank, pivot);
+				for (int h = rank + 1; h < n; h++) {
+					if ((rx[h][w] & mask) != 0) multiplyRows(rx, rz, rr, h, rank);
+				}
+				rank++;
+			}
+
+			// Z strings commute, so reducing the checks only XORs their bits and signs
+			int count = n - rank;
+			long[][] zs = Arrays.copyOfRange(rz, rank, n);
+			int[] zr = Arrays.copyOfRange(rr, rank, n);
+			int[] pivotsFound = new int[count];
+			fixed = new long[words];
+			int done = 0;
+			for (int q = 0; q < n && done < count; q++) {
+				int w = q >>> 6;
+				long mask = 1L << q;
+				int pivot = done;
+				while (pivot < count && (zs[pivot][w] & mask) == 0) pivot++;
+				if (pivot == count) continue;
+				long[] row = zs[pivot];
+				zs[pivot] = zs[done];
+				zs[done] = row;
+				int sign = zr[pivot];
+				zr[pivot] = zr[done];
+				zr[done] = sign;
+				for (int h = 0; h < count; h++) {
+					if (h != done && (zs[h][w] & mask) != 0) {
+						for (int k = 0; k < words; k++) {
+							zs[h][k] ^= row[k];
+						}
+						zr[h] ^= sign;
+					}
+				}
+				pivotsFound[done] = q;
+				fixed[w] |= mask;
+				done++;
+			}
+
+			pivots = Arrays.copyOf(pivotsFound, done);
+			checks = Arrays.copyOf(zs, done);
+			signs = Arrays.copyOf(zr, done);
+			for (int i = 0; i < done; i++) {
+				checks[i][pivots[i] >>> 6] &= ~(1L << pivots[i]);
+			}
+			free = n - done;
+		}
+
+		/**
+		 * the first K outcomes, all of them equally likely at 2^-free, and the rest as "other".
+		 * Past 1074 free qubits that weight is below the smallest double and only "other" is left.
+		 * @param k
+		 * @return
+		 */
+		QCSTopK top(int k) {
+			QCSTopK top = new QCSTopK(k);
+			double p = Math.scalb(1.0, -free);
+			long listed = (free < 63) ? Math.min(k, 1L << free) : k;
+			for (long c = 0; c < listed; c++) {
+				long[] bits = new long[words];
+				outcome(c, bits);
+				top.offer(bits, qubits, p);
+			}
+			top.addUnlisted(Math.max(0, 1.0 - top.getTotal()));
+			return top;
+		}
+
+		/**
+		 * one shot, drawing the free qubits
+		 * @param random
+		 * @param bits
+		 */
+		void draw(SplittableRandom random, long[] bits) {
+			for (int w = 0; w < words; w++) {
+				bits[w] = random.nextLong() & ~fixed[w];
+			}
+			int last = qubits & 63;
+			if (last != 0) bits[words - 1] &= (1L << last) - 1;
+			solve(bits);
+		}
+
+		/**
+		 * the outcome with the free qubits set from the bits of a counter, lowest free qubit first
+		 * @param counter
+		 * @param bits
+		 */
+		private void outcome(long counter, long[] bits) {
+			Arrays.fill(bits, 0L);
+			for (int q = 0; q < qubits && counter != 0; q++) {
+				if ((fixed[q >>> 6] & (1L << q)) != 0) continue;
+				if ((counter & 1) != 0) bits[q >>> 6] |= 1L << q;
+				counter >>>= 1;
+			}
+			solve(bits);
+		}
+
+		/**
+		 * setting the fixed qubits from the free ones, which are the only bits set on entry
+		 * @param bits
+		 */
+		private void solve(long[] bits) {
+			for (int i = 0; i < pivots.length; i++) {
+				long[] check = checks[i];
+				int parity = signs[i];
+				for (int w = 0; w < words; w++) {
+					parity ^= Long.bitCount(check[w] & bits[w]);
+				}
+				if ((parity & 1) != 0) bits[pivots[i] >>> 6] |= 1L << pivots[i];
+			}
+		}
+
+		private static void swapRows(long[][] rx, long[][] rz, int[] rr, int a, int b) {
+			long[] row = rx[a];
+			rx[a] = rx[b];
+			rx[b] = row;
+			row = rz[a];
+			rz[a] = rz[b];
+			rz[b] = row;
+			int sign = rr[a];
+			rr[a] = rr[b];
+			rr[b] = sign;
+		}
+
+		/**
+		 * row h becomes the product of rows h and i, 64 qubits at a time with the same phase count as rowsum
+		 * @param rx
+		 * @param rz
+		 * @param rr
+		 * @param h
+		 * @param i
+		 */
+		private static void multiplyRows(long[][] rx, long[][] rz, int[] rr, int h, int i) {
+			int sum = 2 * rr[h] + 2 * rr[i];
+			long[] xh = rx[h], zh = rz[h], xi = rx[i], zi = rz[i];
+			for (int w = 0; w < xh.length; w++) {
+				long x1 = xi[w], z1 = zi[w], x2 = xh[w], z2 = zh[w];
+				long onlyX = x1 & ~z1, both = x1 & z1, onlyZ = ~x1 & z1;
+				// +1 for XY, YZ, ZX and -1 for XZ, YX, ZY
+				long plus = (onlyX & x2 & z2) | (both & ~x2 & z2) | (onlyZ & x2 & ~z2);
+				long minus = (onlyX & ~x2 & z2) | (both & x2 & ~z2) | (onlyZ & x2 & z2);
+				sum += Long.bitCount(plus) - Long.bitCount(minus);
+				xh[w] = x2 ^ x1;
+				zh[w] = z2 ^ z1;
+			}
+			rr[h] = (Math.floorMod(sum, 4) == 0) ? 0 : 1;
+		}
+	}
+
+	/**
+	 * whether measuring the qubit gives a random outcome
+	 * @param a
+	 * @return
+	 */
+	private boolean isRandom(int a) {
+		return nextSetBit(x, a * words, qubits, scratch) >= 0;
+	}
+
+	/**
+	 * measuring one qubit in the Z basis. A random outcome is forced to the given value.
+	 * @param a
+	 * @param forced outcome to collapse to when the result is random
+	 * @return the deterministic outcome, or -1 if it was random
+	 */
+	public int measure(int a, int forced) {
+		int base = a * words;
+
+		// a stabilizer anticommuting with Z_a makes the outcome random
+		int p = nextSetBit(x, base, qubits, scratch);
+
+		if (p >= 0) {
+			long[] rows = new long[words];
+			for (int w = 0; w < words; w++) {
+				rows[w] = x[base + w];
+			}
+			rows[p >>> 6] &= ~(1L << p);
+			rows[scratch >>> 6] &= ~(1L << scratch);
+			rowsumAll(rows, p);
+
+			copyRow(p - qubits, p);
+			clearRow(p);
+			setBit(z, a, p, 1);
+			setBit(r, 0, p, forced);
+			return -1;
+		}
+
+		// deterministic, the outcome is the sign of the product of the matching stabilizers
+		clearRow(scratch);
+		for (int i = nextSetBit(x, base, 0, qubits); i >= 0; i = nextSetBit(x, base, i + 1, qubits)) {
+			rowsum(scratch, i + qubits);
+		}
+		return bit(r, 0, scratch);
+	}
+
+	/**
+	 * Pauli gate, flipping the sign of rows that anticommute with it
+	 * @param q
+	 * @param flipOnX
+	 * @param flipOnZ
+	 */
+	private void pauli(int q, boolean flipOnX, boolean flipOnZ) {
+		int base = q * words;
+		for (int w = 0; w < words; w++) {
+			long flip = (flipOnX ? x[base + w] : 0L) ^ (flipOnZ ? z[base + w] : 0L);
+			r[w] ^= flip;
+		}
+	}
+
+	private void hadamard(int q) {
+		int base = q * words;
+		for (int w = 0; w < words; w++) {
+			long xv = x[base + w];
+			long zv = z[base + w];
+			r[w] ^= xv & zv;
+			x[base + w] = zv;
+			z[base + w] = xv;
+		}
+	}
+
+	private void phase(int q) {
+		int base = q * words;
+		for (int w = 0; w < words; w++) {
+			long xv = x[base + w];
+			r[w] ^= xv & z[base + w];
+			z[base + w] ^= xv;
+		}
+	}
+
+	private void cnot(int a, int b) {
+		int ba = a * words;
+		int bb = b * words;
+		for (int w = 0; w < words; w++) {
+			long xa = x[ba + w], za = z[ba + w];
+			long xb = x[bb + w], zb = z[bb + w];
+			r[w] ^= xa & zb & ~(xb ^ za);
+			x[bb + w] = xb ^ xa;
+			z[ba + w] = za ^ zb;
+		}
+	}
+
+	/**
+	 * a swap only relabels the two qubits, so their bit sets are exchanged
+	 * @param a
+	 * @param b
+	 */
+	private void swap(int a, int b) {
+		int ba = a * words;
+		int bb = b * words;
+		for (int w = 0; w < words; w++) {
+			long t = x[ba + w];
+			x[ba + w] = x[bb + w];
+			x[bb + w] = t;
+			t = z[ba + w];
+			z[ba + w] = z[bb + w];
+			z[bb + w] = t;
+		}
+	}
+
+	/**
+	 * every row h in the set becomes the product of rows h and i. The phase exponent of each
+	 * row is counted mod 4 in two bit sets, so all rows are updated 64 at a time.
+	 * @param rows
+	 * @param i
+	 */
+	private void rowsumAll(long[] rows, int i) {
+		long[] c0 = new long[words];
+		long[] c1 = new long[words];
+		long ri = -(long) bit(r, 0, i);
+		for (int w = 0; w < words; w++) {
+			// 2 r_h + 2 r_i mod 4
+			c1[w] = (r[w] ^ ri) & rows[w];
+		}
+
+		for (int q = 0; q < qubits; q++) {
+			int x1 = bit(x, q, i);
+			int z1 = bit(z, q, i);
+			if (x1 == 0 && z1 == 0) continue;
+			int base = q * words;
+
+			for (int w = 0; w < words; w++) {
+				long m = rows[w];
+				if (m == 0) continue;
+				long x2 = x[base + w], z2 = z[base + w];
+
+				// +1 for XY, YZ, ZX and -1 for XZ, YX, ZY
+				long plus, minus;
+				if (x1 == 1 && z1 == 0) {
+					plus = x2 & z2;
+					minus = ~x2 & z2;
+				} else if (x1 == 1) {
+					plus = ~x2 & z2;
+					minus = x2 & ~z2;
+				} else {
+					plus = x2 & ~z2;
+					minus = x2 & z2;
+				}
+				plus &= m;
+				minus &= m;
+
+				long carry = c0[w] & plus;
+				c0[w] ^= plus;
+				c1[w] ^= carry;
+				long borrow = ~c0[w] & minus;
+				c0[w] ^= minus;
+				c1[w] ^= borrow;
+
+				if (x1 == 1) x[base + w] = x2 ^ m;
+				if (z1 == 1) z[base + w] = z2 ^ m;
+			}
+		}
+
+		for (int w = 0; w < words; w++) {
+			r[w] = (r[w] & ~rows[w]) | (c1[w] & rows[w]);
+		}
+	}
+
+	/**
+	 * row h becomes the product of rows h and i
+	 * @param h
+	 * @param i
+	 */
+	private void rowsum(int h, int i) {
+		// exponent of i picked up by multiplying the Paulis, mod 4
+		int sum = 2 * bit(r, 0, h) + 2 * bit(r, 0, i);
+		for (int q = 0; q < qubits; q++) {
+			int x1 = bit(x, q, i), z1 = bit(z, q, i);
+			int x2 = bit(x, q, h), z2 = bit(z, q, h);
+			if (x1 == 1 && z1 == 0) {
+				sum += z2 * (2 * x2 - 1);
+			} else if (x1 == 1) {
+				sum += z2 - x2;
+			} else if (z1 == 1) {
+				sum += x2 * (1 - 2 * z2);
+			}
+			setBit(x, q, h, x1 ^ x2);
+			setBit(z, q, h, z1 ^ z2);
+		}
+		setBit(r, 0, h, (Math.floorMod(sum, 4) == 0) ? 0 : 1);
+	}
+
+	private void copyRow(int to, int from) {
+		for (int q = 0; q < qubits; q++) {
+			setBit(x, q, to, bit(x, q, from));
+			setBit(z, q, to, bit(z, q, from));
+		}
+		setBit(r, 0, to, bit(r, 0, from));
+	}
+
+	private void clearRow(int row) {
+		for (int q = 0; q < qubits; q++) {
+			setBit(x, q, row, 0);
+			setBit(z, q, row, 0);
+		}
+		setBit(r, 0, row, 0);
+	}
+
+	/**
+	 * bit of one row in a qubit's bit set
+	 * @param bits
+	 * @param q
+	 * @param row
+	 * @return
+	 */
+	private int bit(long[] bits, int q, int row) {
+		return (int) (bits[q * words + (row >>> 6)] >>> row) & 1;
+	}
+
+	private void setBit(long[] bits, int q, int row, int value) {
+		int k = q * words + (row >>> 6);
+		long mask = 1L << row;
+		bits[k] = (value != 0) ? bits[k] | mask : bits[k] & ~mask;
+	}
+
+	/**
+	 * first row from to to-1 set in the bit set starting at base, or -1
+	 * @param bits
+	 * @param base
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static int nextSetBit(long[] bits, int base, int from, int to) {
+		for (int row = from; row < to; ) {
+			long word = bits[base + (row >>> 6)] >>> row;
+			if (word != 0) {
+				int found = row + Long.numberOfTrailingZeros(word);
+				return (found < to) ? found : -1;
+			}
+			row = ((row >>> 6) + 1) << 6;
+		}
+		return -1;
+	}
+}
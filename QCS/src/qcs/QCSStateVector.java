@@ -0,0 +1,360 @@
+package qcs;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * State vector holding the 2^n amplitudes of the circuit, with the real and
+ * imaginary parts interleaved in one primitive array. Qubit q is bit q of the basis index.
+ */
+
+public class QCSStateVector implements QCSBackend {
+
+	// 2^(n+1) doubles have to fit in one java array
+	public static final int MAX_QUBITS = 29;
+
+	private final int qubits;
+	private final int dimension;
+	private final double[] amps;
+	private ForkJoinPool pool;
+	private Kernel kernel = Kernel.defaultKernel();
+
+	/**
+	 * Enum for the implementation of the gate inner loops. VECTOR needs the
+	 * jdk.incubator.vector module and falls back to SCALAR when it is missing.
+	 * The default can be chosen with -Dqcs.kernel=scalar|vector.
+	 */
+	public enum Kernel {
+		SCALAR, VECTOR;
+
+		static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+		/**
+		 * kernel from the qcs.kernel property, the vector one when available otherwise
+		 * @return
+		 */
+		static Kernel defaultKernel() {
+			String name = System.getProperty("qcs.kernel", "");
+			if (name.equalsIgnoreCase("scalar") || !VECTOR_AVAILABLE) return SCALAR;
+			return VECTOR;
+		}
+	}
+
+	/**
+	 * constructor, starts in the |0...0> state
+	 * @param qubits
+	 */
+	public QCSStateVector(int qubits) {
+		if (qubits < 1 || qubits > MAX_QUBITS) {
+			throw new QCSController.QCSException("State vector supports 1 to " + MAX_QUBITS + " qubits, got " + qubits);
+		}
+		this.qubits = qubits;
+		this.dimension = 1 << qubits;
+		this.amps = new double[dimension << 1];
+		reset();
+	}
+
+	@Override
+	public int getQubits() {
+		return qubits;
+	}
+
+	/**
+	 * number of basis states
+	 * @return
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	@Override
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void setKernel(Kernel kernel) {
+		if (kernel == Kernel.VECTOR && !Kernel.VECTOR_AVAILABLE) {
+			throw new QCSController.QCSException("Vector kernels need --add-modules jdk.incubator.vector");
+		}
+		this.kernel = kernel;
+	}
+
+	/**
+	 * kernel in use
+	 * @return
+	 */
+	public Kernel getKernel() {
+		return kernel;
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(amps, 0.0);
+		amps[0] = 1.0;
+	}
+
+	@Override
+	public QCSBackend copy() {
+		QCSStateVector copy = new QCSStateVector(qubits);
+		System.arraycopy(amps, 0, copy.amps, 0, amps.length);
+		copy.pool = pool;
+		copy.kernel = kernel;
+		return copy;
+	}
+
+	@Override
+	public long sizeBytes() {
+		return (long) amps.length << 3;
+	}
+
+	/**
+	 * real part of an amplitude
+	 * @param index
+	 * @return
+	 */
+	public double real(int index) {
+		return amps[index << 1];
+	}
+
+	/**
+	 * imaginary part of an amplitude
+	 * @param index
+	 * @return
+	 */
+	public double imag(int index) {
+		return amps[(index << 1) + 1];
+	}
+
+	@Override
+	public double probability(long index) {
+		int p = (int) index << 1;
+		double re = amps[p];
+		double im = amps[p + 1];
+		return re * re + im * im;
+	}
+
+	@Override
+	public void setAmplitude(long index, double re, double im) {
+		int p = (int) index << 1;
+		amps[p] = re;
+		amps[p + 1] = im;
+	}
+
+	@Override
+	public void apply(QCSOperation op) {
+		if (op.kind == QCSGate.Kind.IDENTITY) return;
+		if (op.gate == QCSGate.FUSED2) {
+			QCSPairTask.run(pool, dimension >> 2, (from, to) -> applyMatrix4(op.controls[0], op.target, op.matrix, (int) from, (int) to));
+			return;
+		}
+		QCSPairTask.run(pool, dimension >> 1, (from, to) -> applyRange(op, (int) from, (int) to));
+	}
+
+	/**
+	 * applying a gate to one range of amplitude pairs
+	 * @param op
+	 * @param fromPair
+	 * @param toPair
+	 */
+	private void applyRange(QCSOperation op, int fromPair, int toPair) {
+		if (op.gate == QCSGate.SWAP) {
+			applySwap(op.controls[0], op.target, fromPair, toPair);
+			return;
+		}
+		int controlMask = (int) op.controlMask();
+		// SIMD only pays off once a run of shared control bits fills a register
+		boolean simd = kernel == Kernel.VECTOR
+				&& QCSVectorKernels.segmentLength(op.target, controlMask) << 1 >= QCSVectorKernels.lanes();
+		switch (op.kind) {
+		case DIAGONAL -> {
+			if (simd) QCSVectorKernels.applyDiagonal(amps, op.target, controlMask, op.matrix, fromPair, toPair);
+			else applyDiagonal(op.target, controlMask, op.matrix, fromPair, toPair);
+		}
+		case PERMUTATION -> {
+			if (simd) QCSVectorKernels.applyFlip(amps, op.target, controlMask, fromPair, toPair);
+			else applyFlip(op.target, controlMask, fromPair, toPair);
+		}
+		default -> {
+			if (simd) QCSVectorKernels.applyMatrix(amps, op.target, controlMask, op.matrix, fromPair, toPair);
+			else applyMatrix(op.target, controlMask, op.matrix, fromPair, toPair);
+		}
+		}
+	}
+
+	/**
+	 * 2x2 update of the amplitude pairs that differ only in the target bit.
+	 * Pairs are numbered 0 to 2^(n-1) so a range of them can be handed to one worker.
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	void applyMatrix(int target, int controlMask, double[] m, int fromPair, int toPair) {
+		final double m00r = m[0], m00i = m[1], m01r = m[2], m01i = m[3];
+		final double m10r = m[4], m10i = m[5], m11r = m[6], m11i = m[7];
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final double[] a = amps;
+
+		for (int k = fromPair; k < toPair; k++) {
+			int i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			int p = i0 << 1;
+			int q = (i0 | bit) << 1;
+
+			double ar = a[p], ai = a[p + 1];
+			double br = a[q], bi = a[q + 1];
+
+			a[p] = m00r * ar - m00i * ai + m01r * br - m01i * bi;
+			a[p + 1] = m00r * ai + m00i * ar + m01r * bi + m01i * br;
+			a[q] = m10r * ar - m10i * ai + m11r * br - m11i * bi;
+			a[q + 1] = m10r * ai + m10i * ar + m11r * bi + m11i * br;
+		}
+	}
+
+	/**
+	 * diagonal gate, a phase on each half of the pair and no mixing. A phase of 1 on the
+	 * |..0..> half, as for Z, S and T, leaves those amplitudes untouched.
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	void applyDiagonal(int target, int controlMask, double[] m, int fromPair, int toPair) {
+		final double d0r = m[0], d0i = m[1], d1r = m[6], d1i = m[7];
+		final boolean phaseOnZero = d0r != 1 || d0i != 0;
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final double[] a = amps;
+
+		for (int k = fromPair; k < toPair; k++) {
+			int i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			if (phaseOnZero) {
+				int p = i0 << 1;
+				double re = a[p], im = a[p + 1];
+				a[p] = d0r * re - d0i * im;
+				a[p + 1] = d0r * im + d0i * re;
+			}
+			int q = (i0 | bit) << 1;
+			double re = a[q], im = a[q + 1];
+			a[q] = d1r * re - d1i * im;
+			a[q + 1] = d1r * im + d1i * re;
+		}
+	}
+
+	/**
+	 * X on the target where the controls are set, the two halves of each pair exchanged
+	 * @param target
+	 * @param controlMask
+	 * @param fromPair
+	 * @param toPair
+	 */
+	void applyFlip(int target, int controlMask, int fromPair, int toPair) {
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final double[] a = amps;
+
+		for (int k = fromPair; k < toPair; k++) {
+			int i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & controlMask) != controlMask) continue;
+			int p = i0 << 1;
+			int q = (i0 | bit) << 1;
+			double re = a[p], im = a[p + 1];
+			a[p] = a[q];
+			a[p + 1] = a[q + 1];
+			a[q] = re;
+			a[q + 1] = im;
+		}
+	}
+
+	/**
+	 * 4x4 update of the groups of four amplitudes that differ only in bits a and b,
+	 * the matrix rows ordered (bit of a, bit of b). Groups are numbered 0 to 2^(n-2).
+	 * @param a
+	 * @param b
+	 * @param g
+	 * @param fromQuad
+	 * @param toQuad
+	 */
+	void applyMatrix4(int a, int b, double[] g, int fromQuad, int toQuad) {
+		final int lo = Math.min(a, b);
+		final int hi = Math.max(a, b);
+		final int bitA = 1 << a;
+		final int bitB = 1 << b;
+		final double[] v = amps;
+		final int[] p = new int[4];
+		final double[] re = new double[4];
+		final double[] im = new double[4];
+
+		for (int k = fromQuad; k < toQuad; k++) {
+			int i = insertZero(insertZero(k, lo), hi);
+			p[0] = i << 1;
+			p[1] = (i | bitB) << 1;
+			p[2] = (i | bitA) << 1;
+			p[3] = (i | bitA | bitB) << 1;
+			for (int j = 0; j < 4; j++) {
+				re[j] = v[p[j]];
+				im[j] = v[p[j] + 1];
+			}
+			for (int r = 0; r < 4; r++) {
+				double sr = 0, si = 0;
+				for (int j = 0; j < 4; j++) {
+					double gr = g[(r * 4 + j) * 2], gi = g[(r * 4 + j) * 2 + 1];
+					sr += gr * re[j] - gi * im[j];
+					si += gr * im[j] + gi * re[j];
+				}
+				v[p[r]] = sr;
+				v[p[r] + 1] = si;
+			}
+		}
+	}
+
+	/**
+	 * number with a zero bit inserted at the given position
+	 * @param k
+	 * @param bit
+	 * @return
+	 */
+	private static int insertZero(int k, int bit) {
+		int low = (1 << bit) - 1;
+		return ((k & ~low) << 1) | (k & low);
+	}
+
+	/**
+	 * exchanging the amplitudes of |..1..0..> and |..0..1..> for qubits a and b
+	 * @param a
+	 * @param b
+	 * @param fromPair
+	 * @param toPair
+	 */
+	void applySwap(int a, int b, int fromPair, int toPair) {
+		// walk the pairs of the lower qubit and swap where the two bits differ
+		final int lo = Math.min(a, b);
+		final int hiBit = 1 << Math.max(a, b);
+		final int bit = 1 << lo;
+		final int low = bit - 1;
+		final double[] v = amps;
+
+		for (int k = fromPair; k < toPair; k++) {
+			int i0 = ((k & ~low) << 1) | (k & low);
+			if ((i0 & hiBit) == 0) continue;
+			int p = ((i0 ^ hiBit) | bit) << 1;
+			int q = i0 << 1;
+
+			double re = v[p], im = v[p + 1];
+			v[p] = v[q];
+			v[p + 1] = v[q + 1];
+			v[q] = re;
+			v[q + 1] = im;
+		}
+	}
+}
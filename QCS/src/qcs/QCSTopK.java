@@ -0,0 +1,347 @@
+package qcs;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * The K most likely outcomes of a state or of a set of shot counts, found in one streaming pass.
+ * Each worker keeps a bounded min-heap of its K heaviest outcomes and the heaps are merged at the
+ * end, so the memory and the chart stay at K bars however many of the 2^n outcomes there are.
+ * Backends that can't be scanned by index search their outcomes themselves and only offer a few.
+ * Whatever falls outside the K is reported as one "other" weight.
+ */
+
+public class QCSTopK {
+
+	// outcomes scanned by one task before it splits no further
+	private static final long CHUNK = 1 << 16;
+	// outcomes scanned between two checks for a cancel
+	private static final int CHECK_EVERY = 1 << 12;
+
+	private final int k;
+	private final long[] keys;
+	private final double[] weights;
+	private int size = 0;
+	private double total = 0;
+	// outcomes as bit sets when there are too many qubits for a basis index, the keys index into it
+	private long[][] wide;
+	private int wideCount = 0;
+
+	/**
+	 * constructor, an empty heap
+	 * @param k number of outcomes kept
+	 */
+	public QCSTopK(int k) {
+		if (k < 1) {
+			throw new QCSController.QCSException("Number of bars must be a positive integer.");
+		}
+		this.k = k;
+		this.keys = new long[k];
+		this.weights = new double[k];
+	}
+
+	/**
+	 * top K probabilities of a state. Dense vectors are scanned in parallel over index ranges, the
+	 * stabilizer and MPS backends search for their heaviest outcomes and the sparse backend streams
+	 * its non-zero amplitudes through forEachProbability.
+	 * @param state
+	 * @param k
+	 * @param pool null to scan on the calling thread
+	 * @param cancelled checked during the scan, stops it with a QCSException
+	 * @return
+	 */
+	public static QCSTopK ofState(QCSBackend state, int k, ForkJoinPool pool, BooleanSupplier cancelled) {
+		if (isDense(state)) {
+			return scan(1L << state.getQubits(), i -> i, state::probability, k, pool, cancelled);
+		}
+		if (state instanceof QCSStabilizerTableau tableau) {
+			return tableau.support().top(k);
+		}
+		if (state instanceof QCSMatrixProductState mps) {
+			return mps.beam(k, cancelled);
+		}
+		QCSTopK top = new QCSTopK(k);
+		long[] visited = {0};
+		state.forEachProbability((i, p) -> {
+			if (visited[0]++ % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+			top.offer(i, p);
+		});
+		return top;
+	}
+
+	/**
+	 * whether the state holds all 2^n amplitudes in memory, so any index can be read without listing.
+	 * A spilled state is streamed through forEachProbability instead.
+	 * @param state
+	 * @return
+	 */
+	static boolean isDense(QCSBackend state) {
+		return state instanceof QCSStateVector || state instanceof QCSOffHeapStateVector;
+	}
+
+	/**
+	 * top K outcomes of a sampling run
+	 * @param counts
+	 * @param k
+	 * @param pool null to scan on the calling thread
+	 * @param cancelled checked during the scan, stops it with a QCSException
+	 * @return
+	 */
+	public static QCSTopK ofCounts(QCSShotSampler.Counts counts, int k, ForkJoinPool pool, BooleanSupplier cancelled) {
+		QCSTopK top = scan(counts.size(), i -> counts.outcome((int) i), i -> counts.count((int) i), k, pool, cancelled);
+		top.wide = counts.bits;
+		return top;
+	}
+
+	private static QCSTopK scan(long n, LongUnaryOperator key, LongToDoubleFunction weight, int k, ForkJoinPool pool,
+			BooleanSupplier cancelled) {
+		ScanTask task = new ScanTask(0, n, key, weight, k, cancelled);
+		return (pool == null) ? task.compute() : pool.invoke(task);
+	}
+
+	/**
+	 * adding one outcome, kept only if it beats the lightest of the K so far
+	 * @param key
+	 * @param weight
+	 */
+	public void offer(long key, double weight) {
+		if (weight <= 0) return;
+		total += weight;
+		if (size < k) {
+			keys[size] = key;
+			weights[size] = weight;
+			siftUp(size++);
+		} else if (lighter(keys[0], weights[0], key, weight)) {
+			keys[0] = key;
+			weights[0] = weight;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * adding one outcome given as a bit set. Past 63 qubits it is numbered in the order offered.
+	 * @param bits
+	 * @param qubits
+	 * @param weight
+	 */
+	void offer(long[] bits, int qubits, double weight) {
+		if (qubits <= 63) {
+			offer(bits[0], weight);
+			return;
+		}
+		if (wide == null) {
+			wide = new long[16][];
+		} else if (wideCount == wide.length) {
+			wide = Arrays.copyOf(wide, wideCount << 1);
+		}
+		wide[wideCount] = bits;
+		offer(wideCount++, weight);
+	}
+
+	/**
+	 * counting weight that was never offered in the total, so it is reported as "other"
+	 * @param weight
+	 */
+	void addUnlisted(double weight) {
+		total += weight;
+	}
+
+	/**
+	 * adding the outcomes kept by another heap
+	 * @param other
+	 */
+	public void merge(QCSTopK other) {
+		double before = total;
+		for (int i = 0; i < other.size; i++) {
+			offer(other.keys[i], other.weights[i]);
+		}
+		total = before + other.total;
+	}
+
+	/**
+	 * number of outcomes kept, at most K
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * weight of every outcome offered, kept or not
+	 * @return
+	 */
+	public double getTotal() {
+		return total;
+	}
+
+	/**
+	 * weight of the outcomes that did not make the K
+	 * @return
+	 */
+	public double getOther() {
+		double kept = 0;
+		for (int i = 0; i < size; i++) {
+			kept += weights[i];
+		}
+		return Math.max(0, total - kept);
+	}
+
+	/**
+	 * outcomes kept, heaviest first
+	 * @return
+	 */
+	public long[] keys() {
+		long[] out = new long[size];
+		int[] order = order();
+		for (int i = 0; i < size; i++) {
+			out[i] = keys[order[i]];
+		}
+		return out;
+	}
+
+	/**
+	 * outcomes kept written with the highest qubit first, heaviest first
+	 * @param qubits
+	 * @return
+	 */
+	public String[] names(int qubits) {
+		long[] kept = keys();
+		String[] out = new String[kept.length];
+		for (int i = 0; i < kept.length; i++) {
+			out[i] = (wide != null) ? QCSShotSampler.bitstring(wide[(int) kept[i]], qubits)
+					: QCSShotSampler.bitstring(kept[i], qubits);
+		}
+		return out;
+	}
+
+	/**
+	 * weights of the outcomes kept, heaviest first
+	 * @return
+	 */
+	public double[] weights() {
+		double[] out = new double[size];
+		int[] order = order();
+		for (int i = 0; i < size; i++) {
+			out[i] = weights[order[i]];
+		}
+		return out;
+	}
+
+	/**
+	 * heap slots sorted heaviest first, ties by the lower key
+	 * @return
+	 */
+	private int[] order() {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+			for (int j = i; j > 0 && lighter(keys[order[j - 1]], weights[order[j - 1]], keys[order[j]], weights[order[j]]); j--) {
+				int t = order[j];
+				order[j] = order[j - 1];
+				order[j - 1] = t;
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * whether outcome a ranks below outcome b, equal weights keep the lower key
+	 * @param keyA
+	 * @param weightA
+	 * @param keyB
+	 * @param weightB
+	 * @return
+	 */
+	private static boolean lighter(long keyA, double weightA, long keyB, double weightB) {
+		return weightA < weightB || (weightA == weightB && keyA > keyB);
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!lighter(keys[i], weights[i], keys[parent], weights[parent])) return;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) return;
+			if (child + 1 < size && lighter(keys[child + 1], weights[child + 1], keys[child], weights[child])) {
+				child++;
+			}
+			if (!lighter(keys[child], weights[child], keys[i], weights[i])) return;
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		double weight = weights[i];
+		weights[i] = weights[j];
+		weights[j] = weight;
+	}
+
+	/**
+	 * Inner class for a range of outcomes, each leaf filling its own heap
+	 */
+	private static final class ScanTask extends RecursiveTask<QCSTopK> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+		private final LongUnaryOperator key;
+		private final LongToDoubleFunction weight;
+		private final int k;
+		private final BooleanSupplier cancelled;
+
+		ScanTask(long from, long to, LongUnaryOperator key, LongToDoubleFunction weight, int k, BooleanSupplier cancelled) {
+			this.from = from;
+			this.to = to;
+			this.key = key;
+			this.weight = weight;
+			this.k = k;
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		protected QCSTopK compute() {
+			if (to - from > CHUNK) {
+				long mid = (from + to) >>> 1;
+				ScanTask left = new ScanTask(from, mid, key, weight, k, cancelled);
+				ScanTask right = new ScanTask(mid, to, key, weight, k, cancelled);
+				if (getPool() == null) {
+					QCSTopK top = left.compute();
+					top.merge(right.compute());
+					return top;
+				}
+				left.fork();
+				QCSTopK high = right.compute();
+				QCSTopK top = left.join();
+				top.merge(high);
+				return top;
+			}
+			QCSTopK top = new QCSTopK(k);
+			for (long i = from; i < to; i++) {
+				if ((i - from) % CHECK_EVERY == 0) QCSEngine.checkCancelled(cancelled);
+				top.offer(key.applyAsLong(i), weight.applyAsDouble(i));
+			}
+			return top;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package qcs;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * SIMD versions of the state vector kernels, built on jdk.incubator.vector.
+ * Only loaded when the module is present (--add-modules jdk.incubator.vector),
+ * QCSStateVector keeps the scalar loops as the fallback.
+ */
+
+final class QCSVectorKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	// swaps re and im inside every complex number, {re0, im0, re1, im1} -> {im0, re0, im1, re1}
+	private static final VectorShuffle<Double> SWAP_RE_IM = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+
+	// {-1, 1, -1, 1, ...} so that m * v = mr * v + mi * SIGN * swap(v)
+	private static final DoubleVector SIGN = DoubleVector.fromArray(SPECIES, signs(SPECIES.length()), 0);
+
+	private QCSVectorKernels() {
+	}
+
+	/**
+	 * number of doubles in one vector register
+	 * @return
+	 */
+	static int lanes() {
+		return SPECIES.length();
+	}
+
+	/**
+	 * 2x2 (optionally controlled) update of the pairs fromPair to toPair.
+	 * Pairs are walked in segments of consecutive basis indices that share their control bits,
+	 * each segment being one streaming pass of complex multiply-adds over two runs of doubles.
+	 * @param a interleaved amplitudes
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyMatrix(double[] a, int target, int controlMask, double[] m, int fromPair, int toPair) {
+		final double m00r = m[0], m00i = m[1], m01r = m[2], m01i = m[3];
+		final double m10r = m[4], m10i = m[5], m11r = m[6], m11i = m[7];
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final int segment = segmentLength(target, controlMask);
+		final int lanes = SPECIES.length();
+
+		int k = fromPair;
+		while (k < toPair) {
+			int end = Math.min(toPair, (k | (segment - 1)) + 1);
+			int i0 = ((k & ~low) << 1) | (k & low);
+
+			if ((i0 & controlMask) == controlMask) {
+				int p = i0 << 1;
+				int q = (i0 | bit) << 1;
+				int length = (end - k) << 1;
+				int upper = SPECIES.loopBound(length);
+				int j = 0;
+
+				for (; j < upper; j += lanes) {
+					DoubleVector va = DoubleVector.fromArray(SPECIES, a, p + j);
+					DoubleVector vb = DoubleVector.fromArray(SPECIES, a, q + j);
+					DoubleVector sa = va.rearrange(SWAP_RE_IM).mul(SIGN);
+					DoubleVector sb = vb.rearrange(SWAP_RE_IM).mul(SIGN);
+
+					va.mul(m00r).add(sa.mul(m00i)).add(vb.mul(m01r)).add(sb.mul(m01i)).intoArray(a, p + j);
+					va.mul(m10r).add(sa.mul(m10i)).add(vb.mul(m11r)).add(sb.mul(m11i)).intoArray(a, q + j);
+				}
+
+				// tail shorter than one register
+				for (; j < length; j += 2) {
+					double ar = a[p + j], ai = a[p + j + 1];
+					double br = a[q + j], bi = a[q + j + 1];
+					a[p + j] = m00r * ar - m00i * ai + m01r * br - m01i * bi;
+					a[p + j + 1] = m00r * ai + m00i * ar + m01r * bi + m01i * br;
+					a[q + j] = m10r * ar - m10i * ai + m11r * br - m11i * bi;
+					a[q + j + 1] = m10r * ai + m10i * ar + m11r * bi + m11i * br;
+				}
+			}
+			k = end;
+		}
+	}
+
+	/**
+	 * diagonal update, the |..1..> half of each pair multiplied by d1 and the |..0..> half
+	 * by d0 unless d0 is 1. Walks the same segments as applyMatrix.
+	 * @param a
+	 * @param target
+	 * @param controlMask
+	 * @param m
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyDiagonal(double[] a, int target, int controlMask, double[] m, int fromPair, int toPair) {
+		final double d0r = m[0], d0i = m[1], d1r = m[6], d1i = m[7];
+		final boolean phaseOnZero = d0r != 1 || d0i != 0;
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final int segment = segmentLength(target, controlMask);
+
+		int k = fromPair;
+		while (k < toPair) {
+			int end = Math.min(toPair, (k | (segment - 1)) + 1);
+			int i0 = ((k & ~low) << 1) | (k & low);
+
+			if ((i0 & controlMask) == controlMask) {
+				int length = (end - k) << 1;
+				if (phaseOnZero) phase(a, i0 << 1, length, d0r, d0i);
+				phase(a, (i0 | bit) << 1, length, d1r, d1i);
+			}
+			k = end;
+		}
+	}
+
+	/**
+	 * X update, the two halves of each pair exchanged register by register
+	 * @param a
+	 * @param target
+	 * @param controlMask
+	 * @param fromPair
+	 * @param toPair
+	 */
+	static void applyFlip(double[] a, int target, int controlMask, int fromPair, int toPair) {
+		final int bit = 1 << target;
+		final int low = bit - 1;
+		final int segment = segmentLength(target, controlMask);
+		final int lanes = SPECIES.length();
+
+		int k = fromPair;
+		while (k < toPair) {
+			int end = Math.min(toPair, (k | (segment - 1)) + 1);
+			int i0 = ((k & ~low) << 1) | (k & low);
+
+			if ((i0 & controlMask) == controlMask) {
+				int p = i0 << 1;
+				int q = (i0 | bit) << 1;
+				int length = (end - k) << 1;
+				int upper = SPECIES.loopBound(length);
+				int j = 0;
+				for (; j < upper; j += lanes) {
+					DoubleVector va = DoubleVector.fromArray(SPECIES, a, p + j);
+					DoubleVector.fromArray(SPECIES, a, q + j).intoArray(a, p + j);
+					va.intoArray(a, q + j);
+				}
+				for (; j < length; j++) {
+					double t = a[p + j];
+					a[p + j] = a[q + j];
+					a[q + j] = t;
+				}
+			}
+			k = end;
+		}
+	}
+
+	/**
+	 * multiplying a run of interleaved amplitudes by one complex number
+	 * @param a
+	 * @param p
+	 * @param length number of doubles
+	 * @param dr
+	 * @param di
+	 */
+	private static void phase(double[] a, int p, int length, double dr, double di) {
+		final int lanes = SPECIES.length();
+		int upper = SPECIES.loopBound(length);
+		int j = 0;
+		for (; j < upper; j += lanes) {
+			DoubleVector v = DoubleVector.fromArray(SPECIES, a, p + j);
+			DoubleVector s = v.rearrange(SWAP_RE_IM).mul(SIGN);
+			v.mul(dr).add(s.mul(di)).intoArray(a, p + j);
+		}
+		for (; j < length; j += 2) {
+			double re = a[p + j], im = a[p + j + 1];
+			a[p + j] = dr * re - di * im;
+			a[p + j + 1] = dr * im + di * re;
+		}
+	}
+
+	/**
+	 * number of consecutive pairs whose basis indices are contiguous and share the same control bits
+	 * @param target
+	 * @param controlMask
+	 * @return
+	 */
+	static int segmentLength(int target, int controlMask) {
+		int lowest = (controlMask == 0) ? target : Integer.numberOfTrailingZeros(controlMask);
+		return 1 << Math.min(target, lowest);
+	}
+
+	/**
+	 * alternating sign pattern for the complex multiply
+	 * @param length
+	 * @return
+	 */
+	private static double[] signs(int length) {
+		double[] s = new double[length];
+		for (int i = 0; i < length; i++) {
+			s[i] = (i % 2 == 0) ? -1.0 : 1.0;
+		}
+		return s;
+	}
+}
@@ -1,10 +1,17 @@
 package qcs;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import javafx.application.Application;
-import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.StringBinding;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -20,9 +27,11 @@ import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.Labeled;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Separator;
 import javafx.scene.control.TextArea;
@@ -36,7 +45,6 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
-import javafx.scene.layout.RowConstraints;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
@@ -54,19 +62,37 @@ public class QCSView extends Application {
 	
     private QCSModel model;
     QCSController controller;
-    private Button[][] gridButtons;
+    private QCSCircuitCanvas circuitGrid;
 	private final Map<String, Button> gateButtons = new HashMap<>();
 	private final Map<String, String> gateColours = new HashMap<>();
 	private BarChart<String, Number> barChart;
+	private XYChart.Series<String, Number> barSeries;
+	private Pane labelLayer;
+	// the chart shows gate frequencies until a measurement replaces them with outcome counts
+	private static final String[] GATE_BARS = {"I", "X", "Y", "Z", "H", "S", "T", "U"};
 	private final Map<String, XYChart.Data<String, Number>> barData = new HashMap<>();
 	private final Map<String, Label> percentageLabels = new HashMap<>();
 	private final Map<String, Integer> gateCounts = new HashMap<>();
 	private int totalGateCount = 0;
 	private Label tensorBarLabel;
 	private Label stepLabel;
+	private ProgressBar progressBar;
+	private final TextField[] phaseFields = new TextField[3];
+	private Button cancelBtn;
     private Stage mainStage;
     private int[] savedGridSize;
     private TextArea messageArea;
+    // language of the window, every text is bound to it so a switch only changes the text
+    private final ObjectProperty<Locale> locale = new SimpleObjectProperty<>(Locale.of("en"));
+    private final StringProperty stepCount = new SimpleStringProperty();
+
+    /**
+     * waiting for the warm-up started behind the splash screen, before the window is built
+     */
+    @Override
+    public void init() {
+        QCSWarmup.await();
+    }
 
     /**
      * start method to launch main application
@@ -75,6 +101,7 @@ public class QCSView extends Application {
     public void start(Stage primaryStage) {
         this.model = new QCSModel();
         this.mainStage = primaryStage;
+        locale.addListener((obs, oldLocale, newLocale) -> model.bundle = ResourceBundle.getBundle("qcs.Messages", newLocale));
 
         this.savedGridSize = promptForGridSize();
         if (savedGridSize != null) {
@@ -90,9 +117,9 @@ public class QCSView extends Application {
 	 */
 	private void buildUI() {
 		
-        mainStage.setTitle(model.bundle.getString("name"));
+        mainStage.titleProperty().bind(text("name"));
 
-        Image img = new Image(getClass().getResourceAsStream("qcs.png"));
+        Image img = new Image(QCSWarmup.open("qcs.png"));
         ImageView imgv = new ImageView(img);
         imgv.setFitWidth(300);
         imgv.setPreserveRatio(true);
@@ -107,8 +134,9 @@ public class QCSView extends Application {
         VBox messageBox = messageBar();
         messageArea = (TextArea) messageBox.getChildren().get(0);
 
-        controller = new QCSController(messageArea, model.bundle);
+        controller = new QCSController(messageArea);
         controller.setView(this);
+        controller.setModel(model);
 
         VBox qubitControls = qubitButtons();
         qubitControls.setMinWidth(120);
@@ -119,7 +147,7 @@ public class QCSView extends Application {
 
         BorderPane mainLayout = new BorderPane();
         VBox grid = createGrid(model.gridSize[1], model.gridSize[0]);
-        controller.setGridButtons(gridButtons, model.gridSize[1], model.gridSize[0]);
+        controller.setCircuitGrid(circuitGrid, model.gridSize[1], model.gridSize[0]);
         VBox codeBox = codeBar();
 		TextArea codeArea = (TextArea) codeBox.getChildren().get(1);
 		controller.setCodeBox(codeArea);
@@ -131,19 +159,37 @@ public class QCSView extends Application {
 
         HBox controlButtons = new HBox(2);
         controlButtons.setAlignment(Pos.CENTER);
-        Button newCircuitBtn = new Button(model.bundle.getString("newCircuit"));
+        Button newCircuitBtn = localized(new Button(), "newCircuit");
         newCircuitBtn.setOnAction(e -> controller.handleNewCircuit());
 
-        Button stepBtn = new Button(model.bundle.getString("step"));
+        Button stepBtn = localized(new Button(), "step");
         stepBtn.setOnAction(e -> controller.stepSimulation());
 
-        Button resetBtn = new Button(model.bundle.getString("reset"));
+        Button runBtn = localized(new Button(), "run");
+        runBtn.setOnAction(e -> controller.runSimulation());
+
+        Button measureBtn = localized(new Button(), "measure");
+        measureBtn.setOnAction(e -> controller.measureShots());
+
+        Button backBtn = localized(new Button(), "stepBack");
+        backBtn.setOnAction(e -> controller.stepBackSimulation());
+
+        Button resetBtn = localized(new Button(), "reset");
         resetBtn.setOnAction(e -> controller.resetStepSimulation());
 
-        stepLabel = new Label(model.bundle.getString("steps") + " " + 
-        controller.currentStepColumn + "/" + model.gridSize[0]);
+        stepLabel = new Label();
+        stepLabel.textProperty().bind(Bindings.concat(text("steps"), " ", stepCount));
+        updateStepLabel(controller.currentStepColumn);
+
+        progressBar = new ProgressBar(0);
+        progressBar.setVisible(false);
 
-        controlButtons.getChildren().addAll(newCircuitBtn, stepBtn, resetBtn, stepLabel);
+        cancelBtn = localized(new Button(), "cancel");
+        cancelBtn.setDisable(true);
+        cancelBtn.setOnAction(e -> controller.cancelSimulation());
+
+        controlButtons.getChildren().addAll(newCircuitBtn, stepBtn, runBtn, backBtn, resetBtn, measureBtn, stepLabel,
+        		progressBar, cancelBtn);
 
         VBox topSection = new VBox(menuBar, imgv);
         topSection.setAlignment(Pos.TOP_CENTER);
@@ -235,30 +281,31 @@ public class QCSView extends Application {
 	 */
 	private MenuBar createMenuBar() {
         MenuBar menuBar = new MenuBar();
-        Menu file = new Menu(model.bundle.getString("menu.file"));
-        Menu settings = new Menu(model.bundle.getString("menu.settings"));
-        Menu help = new Menu(model.bundle.getString("menu.help"));
-
-        MenuItem newItem = new MenuItem(model.bundle.getString("menu.new"));
-        MenuItem openItem = new MenuItem(model.bundle.getString("menu.open"));
-        MenuItem saveItem = new MenuItem(model.bundle.getString("menu.save"));
-        MenuItem exitItem = new MenuItem(model.bundle.getString("menu.exit"));
-
-        Menu langItem = new Menu(model.bundle.getString("menu.language"));
-        Menu appearItem = new Menu(model.bundle.getString("menu.appearance"));
-        MenuItem coloursItem = new MenuItem(model.bundle.getString("menu.colours"));
-        MenuItem readItem = new MenuItem(model.bundle.getString("menu.readme"));
-        MenuItem aboutItem = new MenuItem(model.bundle.getString("menu.about"));
-
-        MenuItem lang1 = new MenuItem(model.bundle.getString("menu.language.english"));
-        MenuItem lang2 = new MenuItem(model.bundle.getString("menu.language.spanish"));
-        MenuItem lang3 = new MenuItem(model.bundle.getString("menu.language.portuguese"));
-
-        MenuItem laf1 = new MenuItem(model.bundle.getString("menu.appearance.metal"));
-        MenuItem laf2 = new MenuItem(model.bundle.getString("menu.appearance.nimbus"));
-        MenuItem laf3 = new MenuItem(model.bundle.getString("menu.appearance.windows"));
-        MenuItem laf4 = new MenuItem(model.bundle.getString("menu.appearance.dark"));
-        MenuItem laf5 = new MenuItem(model.bundle.getString("menu.appearance.default"));
+        Menu file = localized(new Menu(), "menu.file");
+        Menu settings = localized(new Menu(), "menu.settings");
+        Menu help = localized(new Menu(), "menu.help");
+
+        MenuItem newItem = localized(new MenuItem(), "menu.new");
+        MenuItem openItem = localized(new MenuItem(), "menu.open");
+        MenuItem saveItem = localized(new MenuItem(), "menu.save");
+        MenuItem exitItem = localized(new MenuItem(), "menu.exit");
+
+        Menu langItem = localized(new Menu(), "menu.language");
+        Menu appearItem = localized(new Menu(), "menu.appearance");
+        MenuItem coloursItem = localized(new MenuItem(), "menu.colours");
+        MenuItem threadsItem = localized(new MenuItem(), "menu.threads");
+        MenuItem readItem = localized(new MenuItem(), "menu.readme");
+        MenuItem aboutItem = localized(new MenuItem(), "menu.about");
+
+        MenuItem lang1 = localized(new MenuItem(), "menu.language.english");
+        MenuItem lang2 = localized(new MenuItem(), "menu.language.spanish");
+        MenuItem lang3 = localized(new MenuItem(), "menu.language.portuguese");
+
+        MenuItem laf1 = localized(new MenuItem(), "menu.appearance.metal");
+        MenuItem laf2 = localized(new MenuItem(), "menu.appearance.nimbus");
+        MenuItem laf3 = localized(new MenuItem(), "menu.appearance.windows");
+        MenuItem laf4 = localized(new MenuItem(), "menu.appearance.dark");
+        MenuItem laf5 = localized(new MenuItem(), "menu.appearance.default");
 
         lang1.setOnAction(e -> switchLanguage("en"));
         lang2.setOnAction(e -> switchLanguage("es"));
@@ -269,6 +316,7 @@ public class QCSView extends Application {
         openItem.setOnAction(e -> controller.loadCircuit());
         saveItem.setOnAction(e -> controller.saveCircuit());
         coloursItem.setOnAction(e -> controller.showColourCustomizationWindow());
+        threadsItem.setOnAction(e -> controller.showThreadsDialog());
 
         laf1.setOnAction(e -> controller.changeAppearance("Metal"));
         laf2.setOnAction(e -> controller.changeAppearance("Nimbus"));
@@ -279,7 +327,7 @@ public class QCSView extends Application {
         appearItem.getItems().addAll(laf1, laf2, laf3, laf4, laf5);
         langItem.getItems().addAll(lang1, lang2, lang3);
         file.getItems().addAll(newItem, openItem, saveItem, exitItem);
-        settings.getItems().addAll(langItem, appearItem, coloursItem);
+        settings.getItems().addAll(langItem, appearItem, coloursItem, threadsItem);
         help.getItems().addAll(readItem, aboutItem);
         menuBar.getMenus().addAll(file, settings, help);
 
@@ -287,20 +335,53 @@ public class QCSView extends Application {
     }
 	
 	/**
-	 * function for switching the application language
-	 * @param locale
+	 * function for switching the application language, the bound texts follow and the
+	 * circuit and simulation are left as they are
+	 * @param langCode
 	 */
 	private void switchLanguage(String langCode) {
-        model.bundle = ResourceBundle.getBundle("qcs.Messages", new java.util.Locale(langCode));
-        buildUI(); // rebuild UI with new language
+        locale.set(Locale.of(langCode));
     }
 
+	/**
+	 * text of a key in the current language, changing with the language
+	 * @param key
+	 * @return
+	 */
+	private StringBinding text(String key) {
+		return Bindings.createStringBinding(() -> ResourceBundle.getBundle("qcs.Messages", locale.get()).getString(key), locale);
+	}
+
+	/**
+	 * binding the text of a label or button to a key
+	 * @param node
+	 * @param key
+	 * @return the node
+	 */
+	private <T extends Labeled> T localized(T node, String key) {
+		node.textProperty().bind(text(key));
+		return node;
+	}
+
+	/**
+	 * binding the text of a menu or menu item to a key
+	 * @param item
+	 * @param key
+	 * @return the item
+	 */
+	private <T extends MenuItem> T localized(T item, String key) {
+		item.textProperty().bind(text(key));
+		return item;
+	}
+
 	/**
 	 * method for creating the message Bar at the bottom
 	 * @return
 	 */
 	private VBox messageBar() {
         TextArea msgArea = new TextArea();
+        // only the console writes here, it keeps count of the characters of each entry
+        msgArea.setEditable(false);
         msgArea.setPrefRowCount(4);
         msgArea.setWrapText(true);
         msgArea.setMaxWidth(Double.MAX_VALUE);
@@ -337,21 +418,12 @@ public class QCSView extends Application {
 	    barChart.setBarGap(2);
 	    barChart.setVerticalZeroLineVisible(false);
 
-	    XYChart.Series<String, Number> series = new XYChart.Series<>();
-
-	    // Only show the 8 single-qubit gates
-	    String[] gates = {"I", "X", "Y", "Z", "H", "S", "T", "U"};
-	    for (String gate : gates) {
-	        XYChart.Data<String, Number> data = new XYChart.Data<>(gate, 0);
-	        barData.put(gate, data);
-	        series.getData().add(data);
-	    }
-
-	    barChart.getData().add(series);
+	    barSeries = new XYChart.Series<>();
+	    barChart.getData().add(barSeries);
 	    StackPane chartPane = new StackPane(barChart);
 	    
 	    chartPane.layoutBoundsProperty().addListener((obs, oldBounds, newBounds) -> {
-	        for (String gate : gates) {
+	        for (String gate : barData.keySet()) {
 	            XYChart.Data<String, Number> data = barData.get(gate);
 	            Node barNode = data.getNode();
 	            Label label = percentageLabels.get(gate);
@@ -367,47 +439,77 @@ public class QCSView extends Application {
 
 	    // Overlay % labels
 	    chartPane.setStyle("-fx-background-color: #f4f4f4; -fx-border-color: black;");
-	    Pane labelLayer = new Pane();
+	    labelLayer = new Pane();
 	    labelLayer.setMouseTransparent(true); // so labels don't interfere with mouse clicks
 	    chartPane.getChildren().add(labelLayer);
 
-	    Platform.runLater(() -> {
-	        for (String gate : gates) {
-	            XYChart.Data<String, Number> data = barData.get(gate);
-	            Label label = new Label("0%");
-	            label.setStyle("-fx-font-size: 10px;");
-	            percentageLabels.put(gate, label);
-	            labelLayer.getChildren().add(label);
-
-	            // Bind label to data node
-	            data.nodeProperty().addListener((obs, oldNode, newNode) -> {
-	                if (newNode != null) {
-	                    newNode.boundsInParentProperty().addListener((o, oldBounds, newBounds) -> {
-	                        double x = newBounds.getMinX() + newBounds.getWidth() / 2 - 10;
-	                        double y = newBounds.getMinY() - 15;
-	                        label.setLayoutX(x);
-	                        label.setLayoutY(y);
-	                    });
-	                }
-	            });
-	        }
-	    });
+	    // Start with the 8 single-qubit gates
+	    setBars(GATE_BARS);
 
 	    return chartPane;
 	}
+
+	/**
+	 * replacing the bars of the chart, each with a 0% label above it
+	 * @param names
+	 */
+	private void setBars(String[] names) {
+	    barSeries.getData().clear();
+	    barData.clear();
+	    percentageLabels.clear();
+	    labelLayer.getChildren().clear();
+
+	    for (String name : names) {
+	        XYChart.Data<String, Number> data = new XYChart.Data<>(name, 0);
+	        barData.put(name, data);
+	        barSeries.getData().add(data);
+
+	        Label label = new Label("0%");
+	        label.setStyle("-fx-font-size: 10px;");
+	        percentageLabels.put(name, label);
+	        labelLayer.getChildren().add(label);
+
+	        // Bind label to data node
+	        data.nodeProperty().addListener((obs, oldNode, newNode) -> {
+	            if (newNode != null) {
+	                newNode.boundsInParentProperty().addListener((o, oldBounds, newBounds) -> {
+	                    double x = newBounds.getMinX() + newBounds.getWidth() / 2 - 10;
+	                    double y = newBounds.getMinY() - 15;
+	                    label.setLayoutX(x);
+	                    label.setLayoutY(y);
+	                });
+	            }
+	        });
+	    }
+	}
+
+	/**
+	 * showing measured outcomes on the chart in place of the gate frequencies
+	 * @param names bitstrings, one bar each
+	 * @param percents share of the shots for each bitstring
+	 */
+	public void showHistogram(String[] names, double[] percents) {
+	    setBars(names);
+	    for (int i = 0; i < names.length; i++) {
+	        barData.get(names[i]).setYValue(percents[i]);
+	        percentageLabels.get(names[i]).setText(String.format("%.1f%%", percents[i]));
+	    }
+	}
 	
 	/**
 	 * to edit percentage on the graphs
 	 * @param gateName
 	 */
 	public void incrementGateCount(String gateName) {
-	    if (!barData.containsKey(gateName)) return;
+	    if (!Arrays.asList(GATE_BARS).contains(gateName)) return;
 
 	    // Update raw count
 	    gateCounts.put(gateName, gateCounts.getOrDefault(gateName, 0) + 1);
 
-	    // Recalculate total
-	    totalGateCount = gateCounts.values().stream().mapToInt(Integer::intValue).sum();
+	    totalGateCount++;
+
+	    // Measured outcomes are on the chart until the next reset
+	    if (!barData.containsKey(gateName)) return;
 
 	    // Update bars and labels
 	    for (String gate : barData.keySet()) {
@@ -431,6 +533,7 @@ public class QCSView extends Application {
 		
 	    totalGateCount = 0;
 	    gateCounts.clear();
+	    if (!barData.containsKey(GATE_BARS[0])) setBars(GATE_BARS);
 	    
 	    for (String gate : barData.keySet()) {
 	        barData.get(gate).setYValue(0);
@@ -445,7 +548,7 @@ public class QCSView extends Application {
 	 */
 	VBox codeBar() {
 
-		Label codeLabel = new Label(model.bundle.getString("code"));
+		Label codeLabel = localized(new Label(), "code");
 		TextArea codeArea = new TextArea();
 		codeArea.setPrefRowCount(2);
 		codeArea.setWrapText(true);
@@ -470,91 +573,49 @@ public class QCSView extends Application {
 		grid.setPadding(new Insets(10));
 		grid.setFillWidth(true);
 
-		Label circuitLabel = new Label(model.bundle.getString("label"));
+		Label circuitLabel = localized(new Label(), "label");
 
-		GridPane circuitGrid = new GridPane();
-		circuitGrid.setStyle("-fx-border-color: black; -fx-border-width: 2;");
+		// one canvas for the whole grid, only the cells in view are drawn
+		circuitGrid = new QCSCircuitCanvas(model, gateColours);
 		VBox.setVgrow(circuitGrid, Priority.ALWAYS);
 
-		for (int i = 0; i < model.gridSize[1]; i++) {
-			RowConstraints rc = new RowConstraints();
-			rc.setPercentHeight(100.0 / model.gridSize[1]);
-			rc.setVgrow(Priority.ALWAYS);
-			circuitGrid.getRowConstraints().add(rc);
-		}
-
-		for (int i = 0; i < model.gridSize[0]; i++) {
-			ColumnConstraints cc = new ColumnConstraints();
-			cc.setPercentWidth(100.0 / model.gridSize[0]);
-			cc.setHgrow(Priority.ALWAYS);
-			circuitGrid.getColumnConstraints().add(cc);
-		}
-
-		// Initialize gridButtons array
-		gridButtons = new Button[rows][cols];
-		
-		for (int row = 0; row < model.gridSize[1]; row++) {
-		    for (int col = 0; col < model.gridSize[0]; col++) {
-		        Button cellButton = new Button();
-		        cellButton.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
-		        cellButton.setStyle(
-		            "-fx-border-color: black;" +
-		            "-fx-border-width: 1;" +
-		            "-fx-padding: 0;"
-		        );
-		        GridPane.setHgrow(cellButton, Priority.NEVER);
-		        GridPane.setVgrow(cellButton, Priority.NEVER);
-
-		        int r = row;
-		        int c = col;
-		        cellButton.setOnAction(e -> {
-		            String gate = controller.getSelectedGate();
-		            String color = controller.getSelectedGateColour();
-
-		            if (gate != null && color != null) {
-		            	if (gate.equals("BARRIER")) {
-		                    // Place barrier in entire column
-		                    for (int i = 0; i < model.gridSize[1]; i++) {
-		                        Button b = gridButtons[i][c];
-		                        b.setText("BARRIER");
-		                        b.setStyle("-fx-background-color: " + color + "; -fx-border-color: black; -fx-border-width: 1px;");
-		                        model.setGate(i, c, "BARRIER");
-		                        incrementGateCount("BARRIER");
-		                    }
-		                } else {
-		                    cellButton.setText(gate);
-		                    cellButton.setStyle("-fx-background-color: " + color + "; -fx-border-color: black; -fx-border-width: 1px;");
-		                    model.setGate(r, c, gate);
-		                    incrementGateCount(gate);
-		                }
-
-		                controller.updateCodeBoxFromGrid();
-		                controller.setGridButtons(gridButtons, rows, cols);
-
-		                if (controller.isMultiGateInProgress()) {
-		                    controller.decrementMultiPlacement();
-		                    if (controller.getRemainingMultiPlacements() > 0) {
-		                        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-		                        alert.setTitle("Multi-Qubit Gate Placement");
-		                        alert.setHeaderText(null);
-		                        alert.setContentText("Place the next part of the " + gate + " gate in the same column.");
-		                        alert.showAndWait();
-		                    } else {
-		                        controller.clearSelectedGate();
-		                    }
-		                } else {
-		                    controller.clearSelectedGate();
+		circuitGrid.setCellListener((r, c) -> {
+		    String gate = controller.getSelectedGate();
+		    String color = controller.getSelectedGateColour();
+
+		    if (gate != null && color != null) {
+		    	if (gate.equals("BARRIER")) {
+		            // Place barrier in entire column, as one change for the listeners
+		            model.batch(() -> {
+		                for (int i = 0; i < model.gridSize[1]; i++) {
+		                    model.setGate(i, c, "BARRIER");
+		                    incrementGateCount("BARRIER");
 		                }
+		            });
+		        } else {
+		            // the grid, the code box and the engine follow the model's change event
+		            model.setGate(r, c, gate);
+		            incrementGateCount(gate);
+		        }
+
+		        if (controller.isMultiGateInProgress()) {
+		            controller.decrementMultiPlacement();
+		            if (controller.getRemainingMultiPlacements() > 0) {
+		                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+		                alert.setTitle("Multi-Qubit Gate Placement");
+		                alert.setHeaderText(null);
+		                alert.setContentText("Place the next part of the " + gate + " gate in the same column.");
+		                alert.showAndWait();
 		            } else {
-		                controller.textBox.appendText(model.bundle.getString("noGate") + "\n");
+		                controller.clearSelectedGate();
 		            }
-		        });
-
-
-		        circuitGrid.add(cellButton, col, row);
-		        gridButtons[row][col] = cellButton;  // store button ref here
+		        } else {
+		            controller.clearSelectedGate();
+		        }
+		    } else {
+		        controller.console.info(model.bundle.getString("noGate"));
 		    }
-		}
+		});
 
 		VBox gridContainer = new VBox(circuitGrid);
 		VBox.setVgrow(gridContainer, Priority.ALWAYS);
@@ -570,21 +631,17 @@ public class QCSView extends Application {
 	 */
 	private VBox qubitButtons() {
 
-		Label gatesLabel = new Label(model.bundle.getString("quantumGates"));
-		Label singlequbit = new Label(model.bundle.getString("singleQubits"));
+		Label gatesLabel = localized(new Label(), "quantumGates");
+		Label singlequbit = localized(new Label(), "singleQubits");
 
 		GridPane qubitButtons = new GridPane();
 		qubitButtons.setHgap(2);
 		qubitButtons.setVgap(2);
 
-		String[] qubitColours = {
-			"#ffadad", "#ffd6a5", "#fdffb6", "#caffbf",
-			"#9bf6ff", "#a0c4ff", "#bdb2ff", "#ffc6ff"
-		};
 		String[] qubitNames = {"I", "X", "Y", "Z", "H", "S", "T", "U"};
 		
-		for (int i = 0; i < qubitColours.length; i++) {
-		    gateColours.put(qubitNames[i], qubitColours[i]);
+		for (int i = 0; i < qubitNames.length; i++) {
+		    gateColours.put(qubitNames[i], QCSGate.valueOf(qubitNames[i]).getColour());
 		}
 
 		for (int i = 0; i < 8; i++) {
@@ -612,18 +669,17 @@ public class QCSView extends Application {
 		col.setHgrow(Priority.ALWAYS);
 		qubitButtons.getColumnConstraints().addAll(col, col);
 
-		Label multiqubit = new Label(model.bundle.getString("multiQubits"));
+		Label multiqubit = localized(new Label(), "multiQubits");
 		multiqubit.setAlignment(Pos.CENTER);
 
 		VBox multiQubitBox = new VBox(2);
 		multiQubitBox.setAlignment(Pos.TOP_CENTER);
 		VBox.setVgrow(multiQubitBox, Priority.ALWAYS);
 
-		String[] multiColours = { "#d0f4de", "#fef9c7", "#fcd5ce", "#cdb4db" };
 		String[] multiNames = {"CX", "SWAP", "CU", "CCX"};
 		
-		for (int i = 0; i < multiColours.length; i++) {
-		    gateColours.put(multiNames[i], multiColours[i]);
+		for (int i = 0; i < multiNames.length; i++) {
+		    gateColours.put(multiNames[i], QCSGate.valueOf(multiNames[i]).getColour());
 		}
 
 		for (int i = 0; i < 4; i++) {
@@ -633,7 +689,7 @@ public class QCSView extends Application {
 			multiQubit.setPrefHeight(Region.USE_COMPUTED_SIZE);
 			VBox.setVgrow(multiQubit, Priority.ALWAYS);
 			multiQubitBox.getChildren().add(multiQubit);
-			String colour = multiColours[i];
+			String colour = gateColours.get(multiNames[i]);
 			multiQubit.setStyle("-fx-background-color: " + colour + "; -fx-border-color: black; -fx-border-width: 1px; -fx-font-size: 10px;");
 			multiQubit.setOnMouseEntered(e -> multiQubit.setStyle("-fx-background-color: " + colour + "; -fx-border-color: white; -fx-border-width: 1px; -fx-font-size: 10px;"));
 			multiQubit.setOnMouseExited(e -> multiQubit.setStyle("-fx-background-color: " + colour + "; -fx-border-color: black; -fx-border-width: 1px; -fx-font-size: 10px;"));
@@ -641,10 +697,10 @@ public class QCSView extends Application {
 			multiQubit.setOnAction(e -> controller.setSelectedGate(multiName, gateColours.get(multiName)));
 		}
 
-		Label operations = new Label(model.bundle.getString("operations"));
+		Label operations = localized(new Label(), "operations");
 		Button barrier = new Button("BARRIER");
 		gateButtons.put("BARRIER", barrier);
-		gateColours.put("BARRIER", "#cacccb");
+		gateColours.put("BARRIER", QCSGate.BARRIER.getColour());
 		
 		barrier.setMaxWidth(Double.MAX_VALUE);
 		barrier.setPrefHeight(Region.USE_COMPUTED_SIZE);
@@ -654,20 +710,20 @@ public class QCSView extends Application {
 		String barrName = "BARRIER";
 		barrier.setOnAction(e -> controller.setSelectedGate(barrName, gateColours.get(barrName)));
 
-		Label phaseLabel = new Label(model.bundle.getString("phaseParam"));
+		Label phaseLabel = localized(new Label(), "phaseParam");
 
 		GridPane phaseGrid = new GridPane();
 		phaseGrid.setHgap(3);
 		phaseGrid.setVgap(3);
 
 		Label aLabel = new Label("a:");
-		TextField aField = new TextField("0.0");
+		TextField aField = phaseField(0);
 
 		Label bLabel = new Label("b:");
-		TextField bField = new TextField("0.0");
+		TextField bField = phaseField(1);
 
 		Label cLabel = new Label("c:");
-		TextField cField = new TextField("0.0");
+		TextField cField = phaseField(2);
 
 		phaseGrid.add(aLabel, 0, 0);
 		phaseGrid.add(aField, 1, 0);
@@ -694,6 +750,33 @@ public class QCSView extends Application {
 		return qubitControls;
 	}
 	
+	/**
+	 * text field for one of the U gate phase parameters, kept in the model as it is typed
+	 * @param index
+	 * @return
+	 */
+	private TextField phaseField(int index) {
+		TextField field = new TextField(Double.toString(model.getPhaseParams()[index]));
+		phaseFields[index] = field;
+		field.textProperty().addListener((obs, oldText, newText) -> {
+			try {
+				model.setPhaseParam(index, Double.parseDouble(newText.trim()));
+			} catch (NumberFormatException e) {
+				// keep the last valid value while the user is still typing
+			}
+		});
+		return field;
+	}
+
+	/**
+	 * showing the model's phase parameters after they were loaded from a file
+	 */
+	public void showPhaseParams() {
+		for (int i = 0; i < phaseFields.length; i++) {
+			if (phaseFields[i] != null) phaseFields[i].setText(Double.toString(model.getPhaseParams()[i]));
+		}
+	}
+
 	/**
 	 * accessing the qubit buttons
 	 * @return
@@ -716,33 +799,28 @@ public class QCSView extends Application {
 	public void resetGateColoursToDefault() {
 	    // Default colors
 	    String[] qubitNames = {"I", "X", "Y", "Z", "H", "S", "T", "U"};
-	    String[] qubitColours = {
-	        "#ffadad", "#ffd6a5", "#fdffb6", "#caffbf",
-	        "#9bf6ff", "#a0c4ff", "#bdb2ff", "#ffc6ff"
-	    };
 
 	    for (int i = 0; i < qubitNames.length; i++) {
-	        gateColours.put(qubitNames[i], qubitColours[i]);
+	        String color = QCSGate.valueOf(qubitNames[i]).getColour();
+	        gateColours.put(qubitNames[i], color);
 	        Button btn = gateButtons.get(qubitNames[i]);
 	        if (btn != null) {
-	            String color = qubitColours[i];
 	            btn.setStyle("-fx-background-color: " + color + "; -fx-border-color: black; -fx-font-size: 10px;");
 	        }
 	    }
 
 	    String[] multiNames = {"CX", "SWAP", "CU", "CCX"};
-	    String[] multiColours = { "#d0f4de", "#fef9c7", "#fcd5ce", "#cdb4db" };
 
 	    for (int i = 0; i < multiNames.length; i++) {
-	        gateColours.put(multiNames[i], multiColours[i]);
+	        String color = QCSGate.valueOf(multiNames[i]).getColour();
+	        gateColours.put(multiNames[i], color);
 	        Button btn = gateButtons.get(multiNames[i]);
 	        if (btn != null) {
-	            String color = multiColours[i];
 	            btn.setStyle("-fx-background-color: " + color + "; -fx-border-color: black; -fx-font-size: 10px;");
 	        }
 	    }
 
-	    gateColours.put("BARRIER", "#cacccb");
+	    gateColours.put("BARRIER", QCSGate.BARRIER.getColour());
 	    Button barrier = gateButtons.get("BARRIER");
 	    if (barrier != null) {
 	        barrier.setStyle("-fx-background-color: lightgray; -fx-border-color: black; -fx-font-size: 10px;");
@@ -759,11 +837,29 @@ public class QCSView extends Application {
 	    }
 	}
 	
+	/**
+	 * showing the progress bar and Cancel button while the simulation thread is working
+	 * @param busy
+	 */
+	public void setBusy(boolean busy) {
+	    progressBar.setVisible(busy);
+	    progressBar.setProgress(busy ? ProgressBar.INDETERMINATE_PROGRESS : 0);
+	    cancelBtn.setDisable(!busy);
+	}
+
+	/**
+	 * fraction of the current batch of gates applied
+	 * @param progress
+	 */
+	public void updateProgress(double progress) {
+	    if (progressBar.isVisible()) progressBar.setProgress(progress);
+	}
+
 	/**
 	 * updating the number of steps as you go through the columns
 	 * @param currentStep
 	 */
 	public void updateStepLabel(int currentStep) {
-	    stepLabel.setText(model.bundle.getString("steps") + " " + currentStep + "/" + model.gridSize[0]);
+	    stepCount.set(currentStep + "/" + model.gridSize[0]);
 	}
 }
\ No newline at end of file
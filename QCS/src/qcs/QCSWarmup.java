@@ -0,0 +1,151 @@
+package qcs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Work done while the splash screen is up and JavaFX is starting. The language bundles and the
+ * window's logo are read, and a small circuit is simulated on the simulation thread pool so the
+ * gate kernels, sampling and backends are loaded and compiled before the first real run. Each
+ * part runs on its own thread and the window opens once all of them finish.
+ */
+
+public class QCSWarmup {
+
+	// big enough that the gates are split over the pool, a 512 KB state
+	private static final int QUBITS = 15;
+	private static final int COLUMNS = 12;
+	// rounds of the circuit, stopped early past the time limit so a slow machine isn't kept waiting
+	private static final int ROUNDS = 4;
+	private static final long TIME_LIMIT = 1_500_000_000L;
+	private static final String[] LANGUAGES = {"en", "es", "pt"};
+	// style sheets are left out, the scene loads them from their URL and would never read these bytes
+	private static final String[] RESOURCES = {"qcs.png"};
+
+	private static final Map<String, byte[]> resources = new ConcurrentHashMap<>();
+	private static volatile CompletableFuture<Void> running;
+
+	/**
+	 * starting the warm-up in the background
+	 * @return done when every part has finished
+	 */
+	public static CompletableFuture<Void> start() {
+		ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+			Thread thread = new Thread(r, "qcs-warmup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletableFuture<Void> warmup = CompletableFuture.allOf(
+				CompletableFuture.runAsync(QCSWarmup::loadBundles, executor),
+				CompletableFuture.runAsync(QCSWarmup::loadResources, executor),
+				CompletableFuture.runAsync(QCSWarmup::runCircuit, executor));
+		warmup.whenComplete((result, e) -> executor.shutdown());
+		running = warmup;
+		return warmup;
+	}
+
+	/**
+	 * waiting for the warm-up, right away when it was never started
+	 */
+	public static void await() {
+		CompletableFuture<Void> warmup = running;
+		if (warmup == null) return;
+		try {
+			warmup.join();
+		// A failed warm-up only makes the first run slower.
+		} catch (CompletionException e) {
+		}
+	}
+
+	/**
+	 * opening a file next to the classes, from memory when the warm-up read it
+	 * @param name
+	 * @return null when there is no such file
+	 */
+	public static InputStream open(String name) {
+		byte[] bytes = resources.get(name);
+		return (bytes != null) ? new ByteArrayInputStream(bytes) : QCSWarmup.class.getResourceAsStream(name);
+	}
+
+	/**
+	 * loading every language, they stay cached by ResourceBundle
+	 */
+	private static void loadBundles() {
+		for (String language : LANGUAGES) {
+			ResourceBundle.getBundle("qcs.Messages", Locale.of(language));
+		}
+	}
+
+	/**
+	 * reading the images
+	 */
+	private static void loadResources() {
+		for (String name : RESOURCES) {
+			try (InputStream in = QCSWarmup.class.getResourceAsStream(name)) {
+				if (in != null) resources.put(name, in.readAllBytes());
+			} catch (IOException e) {
+				// left to be read the usual way when it is needed
+			}
+		}
+	}
+
+	/**
+	 * stepping, running and measuring a circuit with every kind of gate, on the dense
+	 * and sparse backends in turn
+	 */
+	private static void runCircuit() {
+		QCSModel model = new QCSModel();
+		model.setGridSize(QUBITS, COLUMNS);
+		model.setPhaseParam(0, 0.3);
+		model.setPhaseParam(1, 0.7);
+		model.setPhaseParam(2, 1.1);
+		Random random = new Random(1);
+		QCSGate[] gates = {QCSGate.H, QCSGate.X, QCSGate.Y, QCSGate.Z, QCSGate.S, QCSGate.T, QCSGate.U,
+				QCSGate.CX, QCSGate.SWAP, QCSGate.CU, QCSGate.CCX};
+		for (int col = 0; col < COLUMNS; col++) {
+			int row = 0;
+			while (row < QUBITS) {
+				QCSGate gate = gates[random.nextInt(gates.length)];
+				if (row + gate.getQubits() > QUBITS) gate = QCSGate.H;
+				for (int i = 0; i < gate.getQubits(); i++) {
+					model.setGate(row + i, col, gate);
+				}
+				row += gate.getQubits();
+			}
+		}
+
+		QCSEngine engine = new QCSEngine(model);
+		try {
+			long end = System.nanoTime() + TIME_LIMIT;
+			for (int round = 0; round < ROUNDS && System.nanoTime() < end; round++) {
+				engine.setBackendType(round % 2 == 0 ? QCSBackend.Type.HEAP : QCSBackend.Type.SPARSE);
+				if (round % 4 < 2) {
+					while (engine.getColumn() < COLUMNS) engine.step();
+				} else {
+					engine.runTo(COLUMNS);
+				}
+				engine.topOutcomes(8);
+				engine.sample(10_000);
+				QCSCircuitFile.toQiskit(model);
+			}
+		} finally {
+			// shutting the engine's pool down, the window's engine has its own
+			engine.close();
+		}
+	}
+}
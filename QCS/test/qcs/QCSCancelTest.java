@@ -0,0 +1,108 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for cancelling and following a job: a cancel stops a run, sample or top-K without leaving
+ * a broken state behind, a job on a snapshot of the grid doesn't see later edits, and progress
+ * counts every gate of a run in order.
+ */
+
+public class QCSCancelTest {
+
+	private static final int COLUMNS = 24;
+
+	@Test
+	public void cancelStopsRunAndNextRunRecovers() {
+		QCSModel model = QCSCheckpointTest.randomCircuit(new Random(5));
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+
+		try {
+			engine.runTo(COLUMNS / 2);
+			engine.cancel();
+			QCSController.QCSException e = assertThrows(QCSController.QCSException.class, () -> engine.runTo(COLUMNS));
+			assertEquals("Simulation cancelled.", e.getMessage());
+
+			engine.clearCancel();
+			engine.runTo(COLUMNS);
+			QCSCheckpointTest.assertSameState(model, engine, "after cancel");
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	public void cancelStopsSamplingAndTopOutcomes() {
+		QCSModel model = QCSCheckpointTest.randomCircuit(new Random(7));
+		QCSEngine engine = new QCSEngine(model);
+		engine.setThreads(2);
+		engine.setBackendType(QCSBackend.Type.HEAP);
+
+		try {
+			engine.runTo(COLUMNS);
+			engine.cancel();
+			assertThrows(QCSController.QCSException.class, () -> engine.sample(1_000_000));
+			assertThrows(QCSController.QCSException.class, () -> engine.topOutcomes(8));
+
+			engine.clearCancel();
+			assertEquals(1000, engine.sample(1000).getShots());
+			assertTrue(engine.topOutcomes(8).size() > 0);
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	public void jobOnSnapshotIgnoresLaterEdits() {
+		QCSModel model = QCSCheckpointTest.randomCircuit(new Random(13));
+		QCSModel before = model.copy();
+		QCSEngine engine = QCSTestCircuits.engine(model.copy(), QCSBackend.Type.HEAP);
+
+		try {
+			model.setGate(0, 0, QCSGate.H);
+			model.setGate(1, 0, QCSGate.U);
+			model.setPhaseParam(0, 2.5);
+			engine.runTo(COLUMNS);
+			QCSCheckpointTest.assertSameState(before, engine, "after edits to the original");
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	public void progressCoversWholeRun() {
+		QCSModel model = QCSCheckpointTest.randomCircuit(new Random(11));
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		List<int[]> calls = new ArrayList<>();
+		engine.setProgressListener((done, total) -> calls.add(new int[] {done, total}));
+
+		try {
+			engine.runTo(COLUMNS);
+			int gates = 0;
+			for (int col = 0; col < COLUMNS; col++) {
+				gates += engine.decodeColumn(col).size();
+			}
+			int last = 0;
+			for (int[] call : calls) {
+				assertEquals(gates, call[1]);
+				assertTrue(call[0] >= last);
+				last = call[0];
+			}
+			assertEquals(gates, last);
+		} finally {
+			engine.close();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package qcs;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for the engine's checkpoints: moving through the circuit with steps, seeks and edits lands
+ * on the same state as a fresh engine running straight to that column.
+ */
+
+public class QCSCheckpointTest {
+
+	private static final int QUBITS = 7;
+	private static final int COLUMNS = 24;
+	private static final double TOLERANCE = 1e-10;
+
+	@Test
+	public void seeksAndEditsMatchFreshEngine() {
+		Random random = new Random(9);
+		QCSModel model = randomCircuit(random);
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+
+		try {
+			for (int move = 0; move < 60; move++) {
+				int kind = random.nextInt(4);
+				if (kind == 0 && engine.getColumn() < COLUMNS) {
+					engine.step();
+				} else if (kind == 1) {
+					engine.seek(random.nextInt(COLUMNS + 1));
+				} else if (kind == 2) {
+					// only the columns of one-qubit gates, so no multi-qubit gate is left incomplete
+					int col = 2 * random.nextInt(COLUMNS / 2);
+					model.setGate(random.nextInt(QUBITS), col,
+							QCSTestCircuits.SINGLE[random.nextInt(QCSTestCircuits.SINGLE.length)]);
+					engine.invalidate(col);
+					engine.seek(engine.getColumn());
+				} else {
+					engine.runTo(COLUMNS);
+				}
+				assertSameState(model, engine, "move " + move);
+			}
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	public void phaseEditRebuildsLaterColumns() {
+		QCSModel model = randomCircuit(new Random(3));
+		model.setGate(0, 2, QCSGate.U);
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		model.addChangeListener(changes -> engine.invalidate(changes.getFirstColumn()));
+
+		try {
+			engine.runTo(COLUMNS);
+			model.setPhaseParam(1, 0.9);
+			engine.seek(COLUMNS);
+			assertSameState(model, engine, "after phase edit");
+		} finally {
+			engine.close();
+		}
+	}
+
+	/**
+	 * random circuit of every gate kind
+	 * @param random
+	 * @return
+	 */
+	static QCSModel randomCircuit(Random random) {
+		return QCSTestCircuits.random(random, QUBITS, COLUMNS, QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+	}
+
+	/**
+	 * comparing the engine's state with a fresh engine run straight to the same column
+	 * @param model
+	 * @param engine
+	 * @param where
+	 */
+	static void assertSameState(QCSModel model, QCSEngine engine, String where) {
+		int column = engine.getColumn();
+		QCSEngine fresh = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		fresh.setCheckpointBudget(0);
+		try {
+			fresh.runTo(column);
+			if (column == 0) return;
+			engine.seek(column);
+			QCSTestCircuits.assertSameProbabilities(fresh.getState(), engine.getState(), TOLERANCE,
+					where + ", column " + column);
+		} finally {
+			fresh.close();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSCircuitBinary: a saved grid reads back with its phase parameters, and a damaged
+ * file is turned down before anything reaches the model.
+ */
+
+public class QCSCircuitBinaryTest {
+
+	private static final int QUBITS = 5;
+	private static final int COLUMNS = 12;
+	// size of the header with the three phase parameters, where the cells start
+	private static final int CELLS_START = 20 + 3 * 8;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	public void roundTripKeepsGridAndPhase() throws IOException {
+		QCSModel model = randomCircuit();
+		model.setPhaseParam(0, -0.75);
+		model.setPhaseParam(2, Math.PI / 3);
+		Path file = folder.resolve("circuit" + QCSCircuitBinary.EXTENSION);
+		QCSCircuitBinary.write(file, model);
+
+		QCSModel loaded = new QCSModel();
+		QCSCircuitBinary.read(file, loaded);
+		assertEquals(QUBITS, loaded.getRows());
+		assertEquals(COLUMNS, loaded.getColumns());
+		assertArrayEquals(model.getCells(), loaded.getCells());
+		assertArrayEquals(model.getPhaseParams(), loaded.getPhaseParams());
+	}
+
+	@Test
+	public void flippedByteFailsChecksum() throws IOException {
+		byte[] bytes = save();
+		bytes[CELLS_START + 7] ^= 0x01;
+		assertRejected(bytes, "Corrupt circuit file: checksum doesn't match.");
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException {
+		byte[] bytes = save();
+		assertRejected(Arrays.copyOf(bytes, bytes.length - 3), "Corrupt circuit file: sizes don't match the header.");
+		assertRejected(Arrays.copyOf(bytes, 10), "Invalid file format.");
+	}
+
+	@Test
+	public void unknownOpcodeIsRejected() throws IOException {
+		byte[] bytes = save();
+		bytes[CELLS_START + 3] = (byte) (QCSGate.maxOpcode() + 1);
+		// a valid checksum, so it is the opcode that gets the file turned down
+		int body = bytes.length - 4;
+		CRC32C crc = new CRC32C();
+		crc.update(bytes, 0, body);
+		ByteBuffer.wrap(bytes, body, 4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue());
+		assertRejected(bytes, "Unsupported gate opcode in file: " + (QCSGate.maxOpcode() + 1));
+	}
+
+	/**
+	 * bytes of a saved random circuit
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] save() throws IOException {
+		Path file = folder.resolve("saved" + QCSCircuitBinary.EXTENSION);
+		QCSCircuitBinary.write(file, randomCircuit());
+		return Files.readAllBytes(file);
+	}
+
+	/**
+	 * checking that a file of these bytes is turned down with the message, leaving the model as it was
+	 * @param bytes
+	 * @param message
+	 * @throws IOException
+	 */
+	private void assertRejected(byte[] bytes, String message) throws IOException {
+		Path file = folder.resolve("damaged" + QCSCircuitBinary.EXTENSION);
+		Files.write(file, bytes);
+		QCSModel model = new QCSModel();
+		byte[] before = model.getCells().clone();
+		QCSController.QCSException e = assertThrows(QCSController.QCSException.class,
+				() -> QCSCircuitBinary.read(file, model));
+		assertEquals(message, e.getMessage());
+		assertArrayEquals(before, model.getCells());
+	}
+
+	private static QCSModel randomCircuit() {
+		return QCSTestCircuits.random(new Random(4), QUBITS, COLUMNS, QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+	}
+}
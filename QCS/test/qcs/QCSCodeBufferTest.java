@@ -0,0 +1,110 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSCodeBuffer: after any run of edits, the patched text is the code that would be
+ * written for the whole grid, and line lengths counted without building the lines are right.
+ */
+
+public class QCSCodeBufferTest {
+
+	private static final QCSGate[] GATES = {QCSGate.H, QCSGate.X, QCSGate.T, QCSGate.U, QCSGate.CX, QCSGate.CU,
+			QCSGate.SWAP, QCSGate.CCX, QCSGate.BARRIER, null};
+
+	/**
+	 * Class for a plain text buffer standing in for the code box
+	 */
+	private static final class Buffer implements QCSCodeBuffer.Text {
+		final StringBuilder text = new StringBuilder();
+
+		@Override
+		public void set(String text) {
+			this.text.setLength(0);
+			this.text.append(text);
+		}
+
+		@Override
+		public void replace(int start, int end, String text) {
+			this.text.replace(start, end, text);
+		}
+	}
+
+	@Test
+	public void randomEditsMatchFullRegeneration() {
+		Random random = new Random(22);
+		for (int run = 0; run < 20; run++) {
+			QCSModel model = new QCSModel();
+			model.setGridSize(1 + random.nextInt(12), 1 + random.nextInt(40));
+			Buffer buffer = new Buffer();
+			QCSCodeBuffer code = new QCSCodeBuffer(model, buffer);
+			code.rebuild();
+			model.addChangeListener(code::apply);
+
+			for (int edit = 0; edit < 500; edit++) {
+				int kind = random.nextInt(100);
+				if (kind < 80) {
+					model.setGate(random.nextInt(model.getRows()), random.nextInt(model.getColumns()), randomGate(random));
+				} else if (kind < 95) {
+					model.batch(() -> {
+						for (int i = 0; i < 1 + random.nextInt(30); i++) {
+							model.setGate(random.nextInt(model.getRows()), random.nextInt(model.getColumns()), randomGate(random));
+						}
+					});
+				} else if (kind < 98) {
+					model.setPhaseParam(random.nextInt(3), random.nextDouble());
+				} else if (kind < 99) {
+					model.resetGrid();
+				} else {
+					model.setGridSize(1 + random.nextInt(12), 1 + random.nextInt(40));
+				}
+				assertEquals(QCSCircuitFile.toQiskit(model), buffer.text.toString(), "run " + run + ", edit " + edit);
+			}
+		}
+	}
+
+	@Test
+	public void largeBatchIsWrittenWhole() {
+		QCSModel model = new QCSModel();
+		model.setGridSize(64, 64);
+		Buffer buffer = new Buffer();
+		QCSCodeBuffer code = new QCSCodeBuffer(model, buffer);
+		code.rebuild();
+		model.addChangeListener(code::apply);
+
+		model.batch(() -> {
+			for (int row = 0; row < 64; row++) {
+				for (int col = 0; col < 64; col++) {
+					model.setGate(row, col, QCSGate.H);
+				}
+			}
+		});
+		assertEquals(QCSCircuitFile.toQiskit(model), buffer.text.toString());
+	}
+
+	@Test
+	public void commandLengthMatchesCommand() {
+		int[] positions = {0, 7, 8, 9, 10, 97, 98, 99, 100, 9998, 9999, 123456};
+		for (QCSGate gate : QCSGate.values()) {
+			if (gate.getQiskitName() == null) continue;
+			for (int row : positions) {
+				for (int col : positions) {
+					assertEquals(QCSCircuitFile.command(gate, row, col).length(), QCSCircuitFile.commandLength(gate, row, col),
+							gate + " at " + row + ", " + col);
+				}
+			}
+		}
+	}
+
+	private static QCSGate randomGate(Random random) {
+		return GATES[random.nextInt(GATES.length)];
+	}
+}
@@ -0,0 +1,77 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSGateFusion: the fused gates, with and without 4x4 pairs, leave a state vector as
+ * the original gates do, and a run of the engine matches stepping one column at a time.
+ */
+
+public class QCSGateFusionTest {
+
+	private static final int QUBITS = 6;
+	private static final int COLUMNS = 30;
+	private static final double TOLERANCE = 1e-10;
+
+	@Test
+	public void fusedGatesMatchOriginal() {
+		for (int seed = 0; seed < 5; seed++) {
+			QCSModel model = QCSTestCircuits.random(new Random(seed), QUBITS, COLUMNS,
+					QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+			QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+			List<QCSOperation> ops = new ArrayList<>();
+			for (int col = 0; col < COLUMNS; col++) {
+				ops.addAll(engine.decodeColumn(col));
+			}
+			engine.close();
+
+			QCSStateVector expected = new QCSStateVector(QUBITS);
+			for (QCSOperation op : ops) {
+				expected.apply(op);
+			}
+			for (boolean pairs : new boolean[] {false, true}) {
+				QCSGateFusion fusion = new QCSGateFusion();
+				List<QCSOperation> fused = fusion.fuse(ops, QUBITS, pairs);
+				assertTrue(fusion.getFusedCount() > 0, "nothing fused, seed " + seed);
+
+				QCSStateVector actual = new QCSStateVector(QUBITS);
+				for (QCSOperation op : fused) {
+					actual.apply(op);
+				}
+				QCSTestCircuits.assertSameProbabilities(expected, actual, TOLERANCE,
+						"seed " + seed + (pairs ? ", pairs" : ", singles"));
+			}
+		}
+	}
+
+	@Test
+	public void fusedRunMatchesSteps() {
+		QCSModel model = QCSTestCircuits.random(new Random(31), QUBITS, COLUMNS,
+				QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+		for (QCSBackend.Type type : new QCSBackend.Type[] {QCSBackend.Type.HEAP, QCSBackend.Type.SPARSE}) {
+			QCSEngine engine = QCSTestCircuits.engine(model, type);
+			engine.setSparseThreshold(1.0);
+			QCSEngine stepped = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+			try {
+				engine.runTo(COLUMNS);
+				for (int col = 0; col < COLUMNS; col++) {
+					stepped.step();
+				}
+				QCSTestCircuits.assertSameProbabilities(stepped.getState(), engine.getState(), TOLERANCE, type.toString());
+			} finally {
+				engine.close();
+				stepped.close();
+			}
+		}
+	}
+}
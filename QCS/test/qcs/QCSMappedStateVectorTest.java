@@ -0,0 +1,81 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSMappedStateVector with small windows, so gates, scans and the sampler all cross
+ * several of them: the spilled state matches the heap state vector, and so do its top outcomes
+ * and shots.
+ */
+
+public class QCSMappedStateVectorTest {
+
+	// past the alias table, so the sampler sums the file in blocks
+	private static final int QUBITS = 17;
+	private static final int COLUMNS = 16;
+	private static final long WINDOW_BYTES = 1 << 12;
+	private static final int GROUP_BITS = 6;
+	private static final double TOLERANCE = 1e-10;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	public void scansAndShotsMatchHeap() {
+		QCSModel model = QCSTestCircuits.random(new Random(8), QUBITS, COLUMNS,
+				QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		QCSStateVector heap = new QCSStateVector(QUBITS);
+		try (QCSMappedStateVector mapped = new QCSMappedStateVector(QUBITS, folder, WINDOW_BYTES)) {
+			for (int col = 0; col < COLUMNS; col++) {
+				for (QCSOperation op : engine.decodeColumn(col)) {
+					heap.apply(op);
+					mapped.apply(op);
+				}
+			}
+
+			double[] expected = new double[1 << QUBITS];
+			double[] listed = new double[1 << QUBITS];
+			heap.forEachProbability((i, p) -> expected[(int) i] = p);
+			mapped.forEachProbability((i, p) -> listed[(int) i] = p);
+			assertArrayEquals(expected, listed, TOLERANCE);
+
+			QCSTopK top = QCSTopK.ofState(mapped, 8, null, () -> false);
+			QCSTopK heapTop = QCSTopK.ofState(heap, 8, null, () -> false);
+			assertArrayEquals(heapTop.weights(), top.weights(), TOLERANCE);
+
+			long shots = 200_000;
+			QCSShotSampler.Counts counts = new QCSShotSampler(mapped, null, () -> false).sample(shots, 3, null);
+			// outcomes grouped by their top bits, each group's share is far from 0
+			long[] seen = new long[1 << GROUP_BITS];
+			double[] share = new double[1 << GROUP_BITS];
+			for (int i = 0; i < counts.size(); i++) {
+				seen[(int) (counts.outcome(i) >>> (QUBITS - GROUP_BITS))] += counts.count(i);
+			}
+			for (int i = 0; i < expected.length; i++) {
+				share[i >>> (QUBITS - GROUP_BITS)] += expected[i];
+			}
+			assertEquals(shots, counts.getShots());
+			for (int g = 0; g < seen.length; g++) {
+				double frequency = (double) seen[g] / shots;
+				double allowed = 6 * Math.sqrt(share[g] * (1 - share[g]) / shots) + 1e-6;
+				assertTrue(Math.abs(frequency - share[g]) <= allowed,
+						"group " + g + ": " + frequency + " against " + share[g]);
+			}
+		} finally {
+			engine.close();
+		}
+	}
+}
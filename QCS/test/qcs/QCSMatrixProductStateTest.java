@@ -0,0 +1,73 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSMatrixProductState: with a bond large enough nothing is dropped and every column
+ * matches the heap state vector, and a truncated bond stays within what its dropped weight allows.
+ */
+
+public class QCSMatrixProductStateTest {
+
+	private static final int QUBITS = 6;
+	private static final int COLUMNS = 20;
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void matchesHeapOnRandomCircuits() {
+		for (int seed = 0; seed < 5; seed++) {
+			QCSModel model = QCSTestCircuits.random(new Random(seed), QUBITS, COLUMNS,
+					QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+			QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.MPS);
+			try {
+				QCSTestCircuits.assertMatchesHeap(model, engine, TOLERANCE);
+			} finally {
+				engine.close();
+			}
+		}
+	}
+
+	@Test
+	public void truncatedBondStaysNearHeap() {
+		int qubits = 8;
+		int columns = 40;
+		QCSGate[] single = {QCSGate.U, QCSGate.T, null};
+		QCSGate[] multi = {QCSGate.CX};
+		boolean truncated = false;
+
+		for (int seed = 0; seed < 6; seed++) {
+			QCSModel model = QCSTestCircuits.random(new Random(seed), qubits, columns, single, multi);
+			// small rotations keep the state close to a small bond
+			model.setPhaseParam(0, 0.15);
+			QCSEngine heap = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+			QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.MPS);
+			engine.setMaxBond(3);
+			try {
+				heap.runTo(columns);
+				engine.runTo(columns);
+				double error = ((QCSMatrixProductState) engine.getState()).getTruncationError();
+				truncated |= error > 0;
+
+				double distance = 0;
+				for (long i = 0; i < 1L << qubits; i++) {
+					distance += Math.abs(heap.getState().probability(i) - engine.getState().probability(i));
+				}
+				// the total variation distance stays under the square root of the dropped weight
+				assertTrue(distance / 2 <= Math.sqrt(error) + TOLERANCE,
+						"seed " + seed + ": distance " + distance / 2 + ", dropped " + error);
+			} finally {
+				heap.close();
+				engine.close();
+			}
+		}
+		assertTrue(truncated, "no circuit went past the bond");
+	}
+}
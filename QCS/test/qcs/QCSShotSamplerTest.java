@@ -0,0 +1,92 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSShotSampler: a seed gives the same counts on one thread as on several, and the
+ * counts of many shots come close to the exact probabilities.
+ */
+
+public class QCSShotSamplerTest {
+
+	private static final int QUBITS = 5;
+	private static final int COLUMNS = 12;
+	private static final QCSBackend.Type[] TYPES = {QCSBackend.Type.HEAP, QCSBackend.Type.SPARSE, QCSBackend.Type.MPS};
+
+	@Test
+	public void seedGivesSameCountsOnAnyThreads() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (QCSBackend.Type type : TYPES) {
+				QCSEngine engine = runCircuit(type);
+				try {
+					QCSShotSampler sampler = new QCSShotSampler(engine.getState(), null, () -> false);
+					// enough shots to be split over several tasks
+					QCSShotSampler.Counts single = sampler.sample(500_000, 42, null);
+					QCSShotSampler.Counts parallel = sampler.sample(500_000, 42, pool);
+					assertEquals(single.size(), parallel.size(), type.toString());
+					for (int i = 0; i < single.size(); i++) {
+						assertEquals(single.outcome(i), parallel.outcome(i), type + ", outcome " + i);
+						assertEquals(single.count(i), parallel.count(i), type + ", count " + i);
+					}
+				} finally {
+					engine.close();
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void countsConvergeToProbabilities() {
+		long shots = 400_000;
+		for (QCSBackend.Type type : TYPES) {
+			QCSEngine engine = runCircuit(type);
+			try {
+				QCSBackend state = engine.getState();
+				QCSShotSampler.Counts counts = new QCSShotSampler(state, null, () -> false).sample(shots, 7, null);
+				assertEquals(shots, counts.getShots());
+
+				long[] seen = new long[1 << QUBITS];
+				for (int i = 0; i < counts.size(); i++) {
+					seen[(int) counts.outcome(i)] += counts.count(i);
+				}
+				for (int i = 0; i < seen.length; i++) {
+					double p = state.probability(i);
+					double frequency = (double) seen[i] / shots;
+					// six standard deviations of a binomial count, plus a little for outcomes near 0
+					double allowed = 6 * Math.sqrt(p * (1 - p) / shots) + 1e-6;
+					assertTrue(Math.abs(frequency - p) <= allowed,
+							type + ", outcome " + i + ": " + frequency + " against " + p);
+				}
+			} finally {
+				engine.close();
+			}
+		}
+	}
+
+	/**
+	 * engine run to the end of a random circuit on the given backend
+	 * @param type
+	 * @return
+	 */
+	private static QCSEngine runCircuit(QCSBackend.Type type) {
+		QCSModel model = QCSTestCircuits.random(new Random(6), QUBITS, COLUMNS,
+				QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+		QCSEngine engine = QCSTestCircuits.engine(model, type);
+		engine.setSparseThreshold(1.0);
+		engine.runTo(COLUMNS);
+		return engine;
+	}
+}
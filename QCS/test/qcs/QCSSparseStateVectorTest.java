@@ -0,0 +1,74 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSSparseStateVector: random circuits match the heap state vector after every column,
+ * and the switch to a dense state once the sparse one fills up keeps the state as it was.
+ */
+
+public class QCSSparseStateVectorTest {
+
+	private static final int QUBITS = 6;
+	private static final int COLUMNS = 20;
+	private static final double TOLERANCE = 1e-10;
+
+	@Test
+	public void matchesHeapOnRandomCircuits() {
+		for (int seed = 0; seed < 5; seed++) {
+			QCSModel model = QCSTestCircuits.random(new Random(seed), QUBITS, COLUMNS,
+					QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+			QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.SPARSE);
+			// never full enough to switch
+			engine.setSparseThreshold(1.0);
+			try {
+				QCSTestCircuits.assertMatchesHeap(model, engine, TOLERANCE);
+				assertInstanceOf(QCSSparseStateVector.class, engine.getState());
+			} finally {
+				engine.close();
+			}
+		}
+	}
+
+	@Test
+	public void densifyKeepsState() {
+		QCSModel model = QCSTestCircuits.random(new Random(17), QUBITS, COLUMNS,
+				QCSTestCircuits.SINGLE, QCSTestCircuits.MULTI);
+		// a single H in the first column starts sparse, the later columns fill it
+		for (int row = 0; row < QUBITS; row++) {
+			model.setGate(row, 0, row == 0 ? QCSGate.H : null);
+		}
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.SPARSE);
+		engine.setSparseThreshold(0.25);
+		QCSEngine heap = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		boolean switched = false;
+		try {
+			for (int col = 1; col <= COLUMNS; col++) {
+				boolean sparse = engine.getState() == null || engine.getState() instanceof QCSSparseStateVector;
+				heap.step();
+				engine.step();
+				if (sparse && !(engine.getState() instanceof QCSSparseStateVector)) {
+					switched = true;
+					assertEquals(QCSBackend.Type.HEAP, engine.getStateType());
+					String report = engine.stepReport();
+					assertTrue(report != null && report.contains("Switched from sparse"), report);
+				}
+				QCSTestCircuits.assertSameProbabilities(heap.getState(), engine.getState(), TOLERANCE, "column " + col);
+			}
+			assertTrue(switched, "the sparse state never filled up");
+		} finally {
+			engine.close();
+			heap.close();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Tests for QCSStabilizerTableau: Clifford circuits match the heap state vector after every column,
+ * AUTO picks the tableau for them, and its shots only land on outcomes the state can produce.
+ */
+
+public class QCSStabilizerTableauTest {
+
+	private static final int QUBITS = 7;
+	private static final int COLUMNS = 24;
+	private static final double TOLERANCE = 1e-12;
+	private static final QCSGate[] CLIFFORD = {QCSGate.H, QCSGate.S, QCSGate.X, QCSGate.Y, QCSGate.Z, null};
+	private static final QCSGate[] CLIFFORD_MULTI = {QCSGate.CX, QCSGate.SWAP};
+
+	@Test
+	public void matchesHeapOnCliffordCircuits() {
+		for (int seed = 0; seed < 5; seed++) {
+			QCSModel model = cliffordCircuit(new Random(seed));
+			QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.STABILIZER);
+			try {
+				QCSTestCircuits.assertMatchesHeap(model, engine, TOLERANCE);
+				assertEquals(QCSBackend.Type.STABILIZER, engine.getStateType());
+			} finally {
+				engine.close();
+			}
+		}
+	}
+
+	@Test
+	public void autoSamplesOnlyPossibleOutcomes() {
+		QCSModel model = cliffordCircuit(new Random(21));
+		QCSEngine engine = QCSTestCircuits.engine(model, QCSBackend.Type.AUTO);
+		QCSEngine heap = QCSTestCircuits.engine(model, QCSBackend.Type.HEAP);
+		try {
+			engine.runTo(COLUMNS);
+			heap.runTo(COLUMNS);
+			assertEquals(QCSBackend.Type.STABILIZER, engine.getStateType());
+
+			QCSShotSampler.Counts counts = engine.sample(5000);
+			assertEquals(5000, counts.getShots());
+			for (int i = 0; i < counts.size(); i++) {
+				assertTrue(heap.getState().probability(counts.outcome(i)) > TOLERANCE,
+						"impossible outcome " + counts.bitstring(i));
+			}
+		} finally {
+			engine.close();
+			heap.close();
+		}
+	}
+
+	/**
+	 * random circuit of Clifford gates only
+	 * @param random
+	 * @return
+	 */
+	private static QCSModel cliffordCircuit(Random random) {
+		return QCSTestCircuits.random(random, QUBITS, COLUMNS, CLIFFORD, CLIFFORD_MULTI);
+	}
+}
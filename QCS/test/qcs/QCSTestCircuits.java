@@ -0,0 +1,108 @@
+package qcs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+/**
+ * @author Bianca & Davod
+ * JAP CST8221
+ * Professor: Paulo Sousa
+ * Program to create an interface for a quantum circuit simulator
+ *
+ * Random circuits and state comparisons shared by the tests. Even columns hold one-qubit gates,
+ * odd columns one multi-qubit gate on randomly chosen rows.
+ */
+
+final class QCSTestCircuits {
+
+	static final QCSGate[] SINGLE = {QCSGate.H, QCSGate.X, QCSGate.Y, QCSGate.S, QCSGate.T, QCSGate.U, null};
+	static final QCSGate[] MULTI = {QCSGate.CX, QCSGate.CU, QCSGate.SWAP, QCSGate.CCX};
+
+	private QCSTestCircuits() {
+	}
+
+	/**
+	 * random circuit, with fixed phase parameters for the U and CU gates
+	 * @param random
+	 * @param qubits
+	 * @param columns
+	 * @param single gates for the even columns, null leaving a cell empty
+	 * @param multi gates for the odd columns
+	 * @return
+	 */
+	static QCSModel random(Random random, int qubits, int columns, QCSGate[] single, QCSGate[] multi) {
+		QCSModel model = new QCSModel();
+		model.setGridSize(qubits, columns);
+		model.setPhaseParam(0, 0.4);
+		model.setPhaseParam(1, 1.3);
+		model.setPhaseParam(2, 0.2);
+		int[] rows = new int[qubits];
+		for (int col = 0; col < columns; col++) {
+			if (col % 2 == 0) {
+				for (int row = 0; row < qubits; row++) {
+					model.setGate(row, col, single[random.nextInt(single.length)]);
+				}
+				continue;
+			}
+			QCSGate gate = multi[random.nextInt(multi.length)];
+			if (gate.getQubits() > qubits) continue;
+			// a partial shuffle picks the rows, the decoder groups them top to bottom
+			for (int row = 0; row < qubits; row++) rows[row] = row;
+			for (int i = 0; i < gate.getQubits(); i++) {
+				int j = i + random.nextInt(qubits - i);
+				int swap = rows[i];
+				rows[i] = rows[j];
+				rows[j] = swap;
+				model.setGate(rows[i], col, gate);
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * engine on one thread with the backend fixed
+	 * @param model
+	 * @param type
+	 * @return
+	 */
+	static QCSEngine engine(QCSModel model, QCSBackend.Type type) {
+		QCSEngine engine = new QCSEngine(model);
+		engine.setThreads(1);
+		engine.setBackendType(type);
+		return engine;
+	}
+
+	/**
+	 * stepping the engine and a heap engine through every column, comparing the states after each
+	 * @param model
+	 * @param engine
+	 * @param tolerance
+	 */
+	static void assertMatchesHeap(QCSModel model, QCSEngine engine, double tolerance) {
+		QCSEngine heap = engine(model, QCSBackend.Type.HEAP);
+		try {
+			for (int col = 1; col <= model.getColumns(); col++) {
+				heap.step();
+				engine.step();
+				assertSameProbabilities(heap.getState(), engine.getState(), tolerance, "column " + col);
+			}
+		} finally {
+			heap.close();
+		}
+	}
+
+	/**
+	 * comparing the probability of every basis state of two states
+	 * @param expected
+	 * @param actual
+	 * @param tolerance
+	 * @param where
+	 */
+	static void assertSameProbabilities(QCSBackend expected, QCSBackend actual, double tolerance, String where) {
+		assertEquals(expected.getQubits(), actual.getQubits(), where);
+		for (long i = 0; i < 1L << expected.getQubits(); i++) {
+			assertEquals(expected.probability(i), actual.probability(i), tolerance, where + ", outcome " + i);
+		}
+	}
+}